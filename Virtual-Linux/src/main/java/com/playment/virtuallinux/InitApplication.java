@@ -1,10 +1,26 @@
 package com.playment.virtuallinux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
 import com.playment.virtuallinux.core.CommandImplementer;
+import com.playment.virtuallinux.core.CommandPipeline;
+import com.playment.virtuallinux.core.ParallelScriptExecutor;
+import com.playment.virtuallinux.replication.ReplicationFollower;
+import com.playment.virtuallinux.replication.ReplicationLeader;
+import com.playment.virtuallinux.replication.ReplicationLog;
 
 /**
  * InitApplication initiates VirtualApplication program.
@@ -23,17 +39,70 @@ public class InitApplication {
 	/** The EMPTY string */
 	private static final String EMPTY = "";
 
+	/** start argument names */
+	private static final String LEADER = "--leader";
+	private static final String FOLLOWER = "--follower";
+	private static final String SCRIPT = "--script";
+	private static final String THREADS = "--threads";
+	private static final String PIPELINE = "--pipeline";
+
+	/** MAX_PORT - largest TCP port */
+	private static final int MAX_PORT = 65535;
+
+	/** USAGE - start arguments usage */
+	private static final String USAGE = "ERR: USAGE: [--leader <port> | --follower <port>]"
+			+ " [--script <file> [--threads <count>] | --pipeline <queue-capacity>]";
+
 	/**
 	 * main function from where application starts
 	 * 
+	 * Optional start arguments:
+	 * 
+	 * '--leader <port>' streams mkdir/rm commands to followers on given local port
+	 * 
+	 * '--follower <port>' follows the leader on given local port and serves
+	 * read-only commands
+	 * 
+	 * '--script <file>' runs the commands of given file in batch and exits,
+	 * '--threads <count>' runs independent commands of the script in parallel
+	 * 
+	 * '--pipeline <queue-capacity>' reads, executes and prints the commands of the
+	 * standard input on separate threads, for large piped inputs
+	 * 
 	 * @param args
 	 *            start arguments
 	 */
 	public static void main(String[] args) {
 		displayWelcomeMessage();
 
-		Scanner scanner = new Scanner(System.in);
+		Map<String, String> options = parseOptions(args);
 		CommandImplementer commandImplementer = new CommandImplementer();
+		if (Objects.isNull(options) || !configureReplication(options, commandImplementer)) {
+			return;
+		}
+		if (options.containsKey(SCRIPT)) {
+			executeScript(options, commandImplementer);
+			return;
+		}
+		if (options.containsKey(PIPELINE)) {
+			executePipeline(options, commandImplementer);
+			return;
+		}
+
+		runInteractive(System.in, commandImplementer);
+	}
+
+	/**
+	 * runInteractive reads commands line by line from the input, printing the
+	 * current directory before each of them, until an 'exit' line
+	 * 
+	 * @param input
+	 *            input with one command per line
+	 * @param commandImplementer
+	 *            session to run the commands on
+	 */
+	public static void runInteractive(InputStream input, CommandImplementer commandImplementer) {
+		Scanner scanner = new Scanner(input);
 		while (true) {
 			headerLogger.info(commandImplementer.executePwd(commandImplementer.getCurrentDirectory()));
 			String command = scanner.nextLine();
@@ -48,7 +117,146 @@ public class InitApplication {
 			}
 		}
 		scanner.close();
+	}
+
+	/**
+	 * parseOptions parses start arguments given as '--name value' pairs,
+	 * '--threads' only being valid with '--script'
+	 * 
+	 * @param args
+	 *            start arguments
+	 * @return options by name, or null if arguments are invalid
+	 */
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		if (args.length % 2 != 0) {
+			outputmsgLogger.error(USAGE);
+			return null;
+		}
+		for (int i = 0; i < args.length; i += 2) {
+			if (!Arrays.asList(LEADER, FOLLOWER, SCRIPT, THREADS, PIPELINE).contains(args[i])) {
+				outputmsgLogger.error(USAGE);
+				return null;
+			}
+			options.put(args[i], args[i + 1]);
+		}
+		if (options.containsKey(LEADER) && options.containsKey(FOLLOWER)
+				|| options.containsKey(SCRIPT) && options.containsKey(PIPELINE)
+				|| options.containsKey(THREADS) && !options.containsKey(SCRIPT)
+				|| !isNumberInRange(options, PIPELINE, 1, Integer.MAX_VALUE) && options.containsKey(PIPELINE)
+				|| !isNumberInRange(options, LEADER, 0, MAX_PORT) && options.containsKey(LEADER)
+				|| !isNumberInRange(options, FOLLOWER, 1, MAX_PORT) && options.containsKey(FOLLOWER)
+				|| !isNumberInRange(options, THREADS, 1, Integer.MAX_VALUE) && options.containsKey(THREADS)) {
+			outputmsgLogger.error(USAGE);
+			return null;
+		}
+		return options;
+	}
+
+	/**
+	 * configureReplication starts leader or follower role requested by start
+	 * arguments
+	 * 
+	 * @param options
+	 *            start options
+	 * @param commandImplementer
+	 *            session to replicate from or to
+	 * @return false if replication can't be started
+	 */
+	private static boolean configureReplication(Map<String, String> options, CommandImplementer commandImplementer) {
+		if (options.containsKey(LEADER)) {
+			int port = Integer.parseInt(options.get(LEADER));
+			try {
+				ReplicationLeader leader = new ReplicationLeader(new ReplicationLog(), port);
+				leader.start();
+				commandImplementer.setReplicationNode(leader);
+				outputmsgLogger.info("\nREPLICATION LEADER LISTENING ON PORT " + leader.getPort());
+			} catch (IOException e) {
+				outputmsgLogger.error("ERR: CANNOT LISTEN ON PORT " + port + " - " + e.getMessage());
+				return false;
+			}
+		} else if (options.containsKey(FOLLOWER)) {
+			int port = Integer.parseInt(options.get(FOLLOWER));
+			ReplicationFollower follower = new ReplicationFollower(commandImplementer, port);
+			commandImplementer.setReplicationNode(follower);
+			follower.start();
+			outputmsgLogger.info("\nREPLICATION FOLLOWER OF LEADER ON PORT " + port + ", READ ONLY");
+		}
+		return true;
+	}
 
+	/**
+	 * executeScript runs the commands of the script file, in parallel when more
+	 * than one thread is requested
+	 * 
+	 * @param options
+	 *            start options
+	 * @param commandImplementer
+	 *            session to run the script on
+	 */
+	private static void executeScript(Map<String, String> options, CommandImplementer commandImplementer) {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(Paths.get(options.get(SCRIPT)), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			outputmsgLogger.error("ERR: CANNOT READ SCRIPT " + options.get(SCRIPT) + " - " + e.getMessage());
+			return;
+		}
+		int threads = options.containsKey(THREADS) ? Integer.parseInt(options.get(THREADS)) : 1;
+		new ParallelScriptExecutor(commandImplementer, threads).execute(lines);
+	}
+
+	/**
+	 * executePipeline runs the commands of the standard input through a
+	 * {@link CommandPipeline} and prints how busy each stage was and how long
+	 * the reader waited for input
+	 * 
+	 * @param options
+	 *            start options
+	 * @param commandImplementer
+	 *            session to run the commands on
+	 */
+	private static void executePipeline(Map<String, String> options, CommandImplementer commandImplementer) {
+		CommandPipeline pipeline = new CommandPipeline(commandImplementer, Integer.parseInt(options.get(PIPELINE)));
+		long start = System.nanoTime();
+		try {
+			pipeline.run(System.in);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		outputmsgLogger.info("PIPELINE: COMMANDS " + pipeline.getCommandCount() + " - WALL "
+				+ toMillis(System.nanoTime() - start) + " MS - READER BUSY " + toMillis(pipeline.getReaderBusyNanos())
+				+ " MS - INPUT WAIT " + toMillis(pipeline.getInputWaitNanos()) + " MS - EXECUTOR BUSY "
+				+ toMillis(pipeline.getExecutorBusyNanos()) + " MS - OUTPUT BUSY "
+				+ toMillis(pipeline.getOutputBusyNanos()) + " MS");
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * isNumberInRange checks whether an option is a number within given bounds.
+	 * '--leader 0' is allowed and binds an ephemeral port, which is printed once
+	 * listening.
+	 * 
+	 * @param options
+	 *            start options
+	 * @param option
+	 *            option to check
+	 * @param min
+	 *            smallest allowed value
+	 * @param max
+	 *            largest allowed value
+	 * @return true if the option is a number between min and max
+	 */
+	private static boolean isNumberInRange(Map<String, String> options, String option, int min, int max) {
+		if (Objects.isNull(options.get(option)) || !options.get(option).matches("[0-9]{1,9}")) {
+			return false;
+		}
+		int value = Integer.parseInt(options.get(option));
+		return value >= min && value <= max;
 	}
 
 	/**
@@ -63,7 +271,11 @@ public class InitApplication {
 		outputmsgLogger.info("4. rm");
 		outputmsgLogger.info("5. cd");
 		outputmsgLogger.info("6. session clear");
-		outputmsgLogger.info("7. exit");
+		outputmsgLogger.info("7. replication status");
+		outputmsgLogger.info("8. watch [-r] <path>");
+		outputmsgLogger.info("9. unwatch <path>");
+		outputmsgLogger.info("10. diff <path> <path>");
+		outputmsgLogger.info("11. exit");
 
 	}
 }
@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram records latencies in log-linear buckets, each power of two
+ * being split in 32 sub buckets. Memory is fixed whatever the number of
+ * samples and percentiles are within about 3% of the real value, so it can run
+ * for hours.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[64 * SUB_BUCKETS];
+
+	private long count = 0;
+
+	private long max = 0;
+
+	/**
+	 * record adds a sample
+	 *
+	 * @param nanos
+	 *            latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[bucketOf(value)]++;
+		count++;
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * add adds all samples of another histogram
+	 *
+	 * @param other
+	 *            histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * reset removes all samples
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * getPercentile returns the latency below which given share of samples are
+	 *
+	 * @param percentile
+	 *            percentile between 0 and 100
+	 * @return upper bound of the bucket holding the percentile, 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, upperBoundOf(i));
+			}
+		}
+		return max;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		int subBucket = (int) (value >>> exponent) - SUB_BUCKETS / 2;
+		return exponent * SUB_BUCKETS / 2 + SUB_BUCKETS / 2 + subBucket;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+		int subBucket = (bucket - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+		return ((long) (subBucket + 1) << exponent) - 1;
+	}
+}
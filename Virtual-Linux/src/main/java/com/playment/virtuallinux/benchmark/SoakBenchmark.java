@@ -0,0 +1,271 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.playment.virtuallinux.InitApplication;
+import com.playment.virtuallinux.core.CommandImplementer;
+import com.playment.virtuallinux.core.CommandPipeline;
+import com.playment.virtuallinux.core.OutputSink;
+
+/**
+ * SoakBenchmark replays a generated trace against the application for a
+ * number of commands or a duration, and reports throughput over time, latency
+ * percentiles, heap occupancy, allocation rate and GC collection time as JSON.
+ *
+ * Start it using 'java -cp Virtual-Linux-0.0.1.jar
+ * com.playment.virtuallinux.benchmark.SoakBenchmark [--name value]...'.
+ * Options:
+ *
+ * '--mode direct|input|pipeline' replays through {@link CommandImplementer},
+ * through the console input path of {@link InitApplication} or through
+ * {@link CommandPipeline} (default direct)
+ *
+ * '--seed', '--fan-out', '--depth', '--read-ratio' shape the trace
+ *
+ * '--commands', '--duration-seconds' stop the run, whichever comes first, 0
+ * disables either
+ *
+ * '--interval-ms' length of a reporting interval, '--report' file the JSON
+ * report is written to, '--trace' file the trace is saved to
+ */
+public class SoakBenchmark {
+	/** The benchmarkLogger - Logger for benchmark results */
+	private static final Logger benchmarkLogger = Logger.getLogger("benchmark");
+
+	private static final List<String> MODES = Arrays.asList("direct", "input", "pipeline");
+
+	/** DEFAULTS - default value of every option, in usage order */
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("--mode", "direct");
+		DEFAULTS.put("--seed", "42");
+		DEFAULTS.put("--fan-out", "10");
+		DEFAULTS.put("--depth", "6");
+		DEFAULTS.put("--read-ratio", "0.8");
+		DEFAULTS.put("--commands", "1000000");
+		DEFAULTS.put("--duration-seconds", "0");
+		DEFAULTS.put("--interval-ms", "10000");
+		DEFAULTS.put("--report", "soak-report.json");
+		DEFAULTS.put("--trace", "");
+	}
+
+	/**
+	 * TimedCommandImplementer records the latency of every command it implements
+	 */
+	private static class TimedCommandImplementer extends CommandImplementer {
+
+		private final SoakRecorder recorder;
+
+		TimedCommandImplementer(SoakRecorder recorder) {
+			this.recorder = recorder;
+		}
+
+		@Override
+		public synchronized void implementCommand(List<String> commandPieces, OutputSink commandOutput) {
+			long start = System.nanoTime();
+			super.implementCommand(commandPieces, commandOutput);
+			recorder.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * DiscardingOutputSink drops command outputs, so that console printing is not
+	 * measured
+	 */
+	private static class DiscardingOutputSink implements OutputSink {
+
+		@Override
+		public void info(String message) {
+			// discarded
+		}
+
+		@Override
+		public void error(String message) {
+			// discarded
+		}
+	}
+
+	private final Map<String, String> options;
+
+	private final TraceGenerator generator;
+
+	private final long maxCommands;
+
+	private final long deadlineNanos;
+
+	private Writer traceWriter;
+
+	private SoakBenchmark(Map<String, String> options) {
+		this.options = options;
+		this.generator = new TraceGenerator(Long.parseLong(options.get("--seed")),
+				Integer.parseInt(options.get("--fan-out")), Integer.parseInt(options.get("--depth")),
+				Double.parseDouble(options.get("--read-ratio")));
+		this.maxCommands = Long.parseLong(options.get("--commands"));
+		long durationSeconds = Long.parseLong(options.get("--duration-seconds"));
+		this.deadlineNanos = durationSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds)
+				: Long.MAX_VALUE;
+		if (maxCommands <= 0 && durationSeconds <= 0) {
+			throw new IllegalArgumentException("--commands or --duration-seconds must be positive");
+		}
+	}
+
+	/**
+	 * main function from where the benchmark starts
+	 *
+	 * @param args
+	 *            options as '--name value' pairs
+	 * @throws Exception
+	 *             if the run fails or the report can't be written
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+		for (int i = 0; i < args.length; i++) {
+			if (!DEFAULTS.containsKey(args[i]) || i + 1 == args.length) {
+				benchmarkLogger.error("ERR: USAGE: " + DEFAULTS.keySet() + " followed by their values");
+				return;
+			}
+			options.put(args[i], args[++i]);
+		}
+		if (!MODES.contains(options.get("--mode"))) {
+			benchmarkLogger.error("ERR: --mode must be one of " + MODES);
+			return;
+		}
+
+		Logger.getLogger("header").setLevel(Level.OFF);
+		Logger.getLogger("outputmsg").setLevel(Level.OFF);
+		new SoakBenchmark(options).run();
+	}
+
+	/**
+	 * run replays the trace, then logs and writes the report
+	 *
+	 * @throws Exception
+	 *             if the run fails or the report can't be written
+	 */
+	private void run() throws Exception {
+		SoakRecorder recorder = new SoakRecorder(Long.parseLong(options.get("--interval-ms")));
+		CommandImplementer session = new TimedCommandImplementer(recorder);
+		session.setOutputSink(new DiscardingOutputSink());
+		if (!options.get("--trace").isEmpty()) {
+			traceWriter = Files.newBufferedWriter(Paths.get(options.get("--trace")), StandardCharsets.UTF_8);
+		}
+
+		try {
+			switch (options.get("--mode")) {
+			case "input":
+				replayFromInput(session, false);
+				break;
+			case "pipeline":
+				replayFromInput(session, true);
+				break;
+			default:
+				replayDirect(session);
+				break;
+			}
+		} finally {
+			recorder.finish();
+			if (Objects.nonNull(traceWriter)) {
+				traceWriter.close();
+			}
+		}
+
+		Map<String, Object> settings = new LinkedHashMap<>();
+		options.forEach((name, value) -> settings.put(name.substring(2), value));
+		settings.put("javaVersion", System.getProperty("java.version"));
+		settings.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+		settings.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+		String report = recorder.getReport(settings);
+		Files.write(Paths.get(options.get("--report")), report.getBytes(StandardCharsets.UTF_8));
+		benchmarkLogger.info("REPORT: " + report);
+	}
+
+	/**
+	 * replayDirect runs the trace on the session from the current thread
+	 *
+	 * @param session
+	 *            session to run on
+	 * @throws IOException
+	 *             if the trace can't be saved
+	 */
+	private void replayDirect(CommandImplementer session) throws IOException {
+		for (long count = 0; hasNext(count); count++) {
+			session.setCommand(nextCommand());
+			session.implementCommand();
+		}
+	}
+
+	/**
+	 * replayFromInput writes the trace to a pipe from a feeder thread and reads
+	 * it back like console input
+	 *
+	 * @param session
+	 *            session to run on
+	 * @param isPipelined
+	 *            set to true to read through {@link CommandPipeline} instead of
+	 *            {@link InitApplication#runInteractive}
+	 * @throws Exception
+	 *             if feeding or reading fails
+	 */
+	private void replayFromInput(CommandImplementer session, boolean isPipelined) throws Exception {
+		PipedInputStream input = new PipedInputStream(1 << 16);
+		PipedOutputStream pipe = new PipedOutputStream(input);
+		IOException[] failure = new IOException[1];
+		Thread feeder = new Thread(() -> {
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(pipe, StandardCharsets.UTF_8))) {
+				for (long count = 0; hasNext(count); count++) {
+					writer.write(nextCommand());
+					writer.newLine();
+				}
+				writer.write("exit");
+				writer.newLine();
+			} catch (IOException e) {
+				failure[0] = e;
+			}
+		}, "soak-feeder");
+		feeder.start();
+
+		if (isPipelined) {
+			new CommandPipeline(session).run(input);
+		} else {
+			InitApplication.runInteractive(input, session);
+		}
+		feeder.join();
+		if (Objects.nonNull(failure[0])) {
+			throw failure[0];
+		}
+	}
+
+	private boolean hasNext(long count) {
+		return (maxCommands <= 0 || count < maxCommands) && System.nanoTime() < deadlineNanos;
+	}
+
+	private String nextCommand() throws IOException {
+		String command = generator.next();
+		if (Objects.nonNull(traceWriter)) {
+			traceWriter.write(command);
+			traceWriter.write('\n');
+		}
+		return command;
+	}
+}
@@ -0,0 +1,387 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.log4j.Logger;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * SoakRecorder collects the metrics of a benchmark run per interval: command
+ * throughput, latency percentiles, heap occupancy, allocation rate and GC
+ * collection time. Each interval is logged as one JSON line when it ends, and
+ * the whole run can be written as a JSON report.
+ *
+ * Heap occupancy is the heap used right after each collection, the live data
+ * the collector could not free. The heap used when an interval ends also
+ * counts garbage not yet collected, so it is reported apart as raw usage.
+ *
+ * Latencies must be recorded from a single thread, which also closes the
+ * intervals. GC collections are collected from JVM notifications. Their
+ * duration is the whole collection, which is a pause for stop-the-world
+ * collectors but includes concurrent work for collectors such as ZGC or the
+ * concurrent cycles of G1, so it is reported as collection time.
+ */
+public class SoakRecorder {
+	/** The benchmarkLogger - Logger for benchmark results */
+	private static final Logger benchmarkLogger = Logger.getLogger("benchmark");
+
+	/** ALLOCATION_SAMPLE_NANOS - time between two samples of thread allocations */
+	private static final long ALLOCATION_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final long intervalNanos;
+
+	private final long startNanos;
+
+	private long intervalStartNanos;
+
+	private final LatencyHistogram intervalLatencies = new LatencyHistogram();
+
+	private final LatencyHistogram totalLatencies = new LatencyHistogram();
+
+	private final List<Map<String, Object>> intervals = new ArrayList<>();
+
+	private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/** heapPoolNames - memory pools summed up as heap after a collection */
+	private final Set<String> heapPoolNames = new HashSet<>();
+
+	/** totalThreadAllocatedBytes - JVM total including exited threads, if any */
+	private final Method totalThreadAllocatedBytes = findTotalThreadAllocatedBytes();
+
+	/** threadAllocatedBytes - last allocated bytes seen per thread id */
+	private final Map<Long, Long> threadAllocatedBytes = new HashMap<>();
+
+	private long allocatedBytes;
+
+	private long allocationSampleNanos;
+
+	private long totalAllocatedBytes = 0;
+
+	/** gcLock - guards GC counters, updated by the JVM notification thread */
+	private final Object gcLock = new Object();
+
+	private long intervalGcCount = 0;
+
+	private long intervalGcMillis = 0;
+
+	private long intervalGcMaxMillis = 0;
+
+	private long totalGcCount = 0;
+
+	private long totalGcMillis = 0;
+
+	private long maxGcMillis = 0;
+
+	/** lastHeapAfterGcBytes - heap used after the last collection, null before the first one */
+	private Long lastHeapAfterGcBytes = null;
+
+	/** intervalMaxHeapAfterGcBytes - null if nothing was collected in the interval */
+	private Long intervalMaxHeapAfterGcBytes = null;
+
+	private Long maxHeapAfterGcBytes = null;
+
+	private final NotificationListener gcListener = this::onGcNotification;
+
+	public SoakRecorder(long intervalMillis) {
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		for (MemoryPoolMXBean poolBean : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (poolBean.getType() == MemoryType.HEAP) {
+				heapPoolNames.add(poolBean.getName());
+			}
+		}
+		for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gcBean instanceof NotificationEmitter) {
+				((NotificationEmitter) gcBean).addNotificationListener(gcListener, null, null);
+			}
+		}
+		this.allocatedBytes = getAllocatedBytes();
+		this.startNanos = System.nanoTime();
+		this.intervalStartNanos = startNanos;
+		this.allocationSampleNanos = startNanos;
+	}
+
+	/**
+	 * record adds the latency of a command and closes the interval if it is over
+	 *
+	 * @param latencyNanos
+	 *            latency of the command
+	 */
+	public void record(long latencyNanos) {
+		intervalLatencies.record(latencyNanos);
+		long now = System.nanoTime();
+		if (now - intervalStartNanos >= intervalNanos) {
+			closeInterval(now);
+		} else if (totalThreadAllocatedBytes == null && now - allocationSampleNanos >= ALLOCATION_SAMPLE_NANOS) {
+			getAllocatedBytes();
+			allocationSampleNanos = now;
+		}
+	}
+
+	/**
+	 * finish closes the last interval and stops listening to GC notifications
+	 */
+	public void finish() {
+		if (intervalLatencies.getCount() > 0) {
+			closeInterval(System.nanoTime());
+		}
+		for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gcBean instanceof NotificationEmitter) {
+				try {
+					((NotificationEmitter) gcBean).removeNotificationListener(gcListener);
+				} catch (ListenerNotFoundException e) {
+					// never registered on this collector
+				}
+			}
+		}
+	}
+
+	/**
+	 * getReport builds the report of the whole run
+	 *
+	 * @param settings
+	 *            settings of the run, included as they are
+	 * @return report as JSON
+	 */
+	public String getReport(Map<String, Object> settings) {
+		long elapsedNanos = intervalStartNanos - startNanos;
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+		summary.put("commands", totalLatencies.getCount());
+		summary.put("throughputPerSec", perSecond(totalLatencies.getCount(), elapsedNanos));
+		summary.put("latencyUs", toPercentiles(totalLatencies));
+		summary.put("allocatedBytes", totalAllocatedBytes);
+		summary.put("allocationRateMBPerSec", perSecond(totalAllocatedBytes / (1024.0 * 1024.0), elapsedNanos));
+		synchronized (gcLock) {
+			summary.put("gcCount", totalGcCount);
+			summary.put("gcTimeTotalMs", totalGcMillis);
+			summary.put("gcTimeMaxMs", maxGcMillis);
+			summary.put("heapAfterGcLastBytes", lastHeapAfterGcBytes);
+			summary.put("heapAfterGcMaxBytes", maxHeapAfterGcBytes);
+		}
+		MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+		summary.put("heapUsedBytes", heap.getUsed());
+		summary.put("heapCommittedBytes", heap.getCommitted());
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("settings", settings);
+		report.put("summary", summary);
+		report.put("intervals", intervals);
+		return toJson(report);
+	}
+
+	/**
+	 * closeInterval snapshots the metrics of the interval ending now and logs
+	 * them
+	 *
+	 * @param now
+	 *            end of the interval
+	 */
+	private void closeInterval(long now) {
+		long elapsedNanos = now - intervalStartNanos;
+		long allocated = getAllocatedBytes();
+		long intervalAllocated = allocated - allocatedBytes;
+		allocatedBytes = allocated;
+		totalAllocatedBytes += intervalAllocated;
+		MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+
+		Map<String, Object> interval = new LinkedHashMap<>();
+		interval.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+		interval.put("commands", intervalLatencies.getCount());
+		interval.put("throughputPerSec", perSecond(intervalLatencies.getCount(), elapsedNanos));
+		interval.put("latencyUs", toPercentiles(intervalLatencies));
+		synchronized (gcLock) {
+			interval.put("heapAfterGcLastBytes", lastHeapAfterGcBytes);
+			interval.put("heapAfterGcMaxBytes", intervalMaxHeapAfterGcBytes);
+		}
+		interval.put("heapUsedBytes", heap.getUsed());
+		interval.put("heapCommittedBytes", heap.getCommitted());
+		interval.put("allocatedBytes", intervalAllocated);
+		interval.put("allocationRateMBPerSec", perSecond(intervalAllocated / (1024.0 * 1024.0), elapsedNanos));
+		synchronized (gcLock) {
+			interval.put("gcCount", intervalGcCount);
+			interval.put("gcTimeTotalMs", intervalGcMillis);
+			interval.put("gcTimeMaxMs", intervalGcMaxMillis);
+			intervalGcCount = 0;
+			intervalGcMillis = 0;
+			intervalGcMaxMillis = 0;
+			intervalMaxHeapAfterGcBytes = null;
+		}
+		intervals.add(interval);
+		benchmarkLogger.info("INTERVAL: " + toJson(interval));
+
+		totalLatencies.add(intervalLatencies);
+		intervalLatencies.reset();
+		intervalStartNanos = now;
+	}
+
+	/**
+	 * onGcNotification adds the duration of a finished collection and the heap
+	 * it left in use
+	 *
+	 * @param notification
+	 *            JVM notification
+	 * @param handback
+	 *            unused
+	 */
+	private void onGcNotification(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData) notification.getUserData());
+		long gcMillis = info.getGcInfo().getDuration();
+		long heapAfterGc = 0;
+		for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+			if (heapPoolNames.contains(pool.getKey())) {
+				heapAfterGc += pool.getValue().getUsed();
+			}
+		}
+		synchronized (gcLock) {
+			lastHeapAfterGcBytes = heapAfterGc;
+			intervalMaxHeapAfterGcBytes = Math.max(orZero(intervalMaxHeapAfterGcBytes), heapAfterGc);
+			maxHeapAfterGcBytes = Math.max(orZero(maxHeapAfterGcBytes), heapAfterGc);
+			intervalGcCount++;
+			intervalGcMillis += gcMillis;
+			intervalGcMaxMillis = Math.max(intervalGcMaxMillis, gcMillis);
+			totalGcCount++;
+			totalGcMillis += gcMillis;
+			maxGcMillis = Math.max(maxGcMillis, gcMillis);
+		}
+	}
+
+	/**
+	 * getAllocatedBytes returns the bytes allocated by all threads since the JVM
+	 * started, if the JVM supports it. The JVM total, available from Java 21,
+	 * includes threads that have exited. Otherwise live threads are summed with
+	 * the last value seen for each thread that has exited since, so the total
+	 * never goes down. Threads are sampled every few milliseconds while commands
+	 * are recorded, so only the last moments of a thread that exits are missed.
+	 *
+	 * @return allocated bytes, or 0 if unsupported
+	 */
+	private long getAllocatedBytes() {
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+			return 0;
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+			return 0;
+		}
+		if (totalThreadAllocatedBytes != null) {
+			try {
+				return (Long) totalThreadAllocatedBytes.invoke(allocationBean);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				// fall back to summing threads
+			}
+		}
+		long[] threadIds = allocationBean.getAllThreadIds();
+		long[] allocated = allocationBean.getThreadAllocatedBytes(threadIds);
+		for (int i = 0; i < threadIds.length; i++) {
+			if (allocated[i] >= 0) {
+				threadAllocatedBytes.put(threadIds[i], allocated[i]);
+			}
+		}
+		long total = 0;
+		for (long threadAllocated : threadAllocatedBytes.values()) {
+			total += threadAllocated;
+		}
+		return total;
+	}
+
+	/**
+	 * findTotalThreadAllocatedBytes looks up the JVM wide allocation counter,
+	 * which older JVMs do not have
+	 *
+	 * @return getTotalThreadAllocatedBytes method, or null if missing
+	 */
+	private static Method findTotalThreadAllocatedBytes() {
+		try {
+			return com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private Map<String, Object> toPercentiles(LatencyHistogram histogram) {
+		Map<String, Object> percentiles = new LinkedHashMap<>();
+		percentiles.put("p50", toMicros(histogram.getPercentile(50)));
+		percentiles.put("p90", toMicros(histogram.getPercentile(90)));
+		percentiles.put("p99", toMicros(histogram.getPercentile(99)));
+		percentiles.put("p999", toMicros(histogram.getPercentile(99.9)));
+		percentiles.put("max", toMicros(histogram.getMax()));
+		return percentiles;
+	}
+
+	private static long orZero(Long bytes) {
+		return bytes == null ? 0 : bytes;
+	}
+
+	private static double toMicros(long nanos) {
+		return Math.round(nanos / 10.0) / 100.0;
+	}
+
+	private static double perSecond(double amount, long nanos) {
+		return nanos <= 0 ? 0 : Math.round(amount * 1e11 / nanos) / 100.0;
+	}
+
+	/**
+	 * toJson writes maps, lists, numbers and strings as JSON
+	 *
+	 * @param value
+	 *            value to write
+	 * @return JSON text
+	 */
+	@SuppressWarnings("unchecked")
+	static String toJson(Object value) {
+		if (value instanceof Map) {
+			StringBuilder json = new StringBuilder("{");
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+				json.append(json.length() > 1 ? "," : "").append(toJson(entry.getKey())).append(':')
+						.append(toJson(entry.getValue()));
+			}
+			return json.append('}').toString();
+		}
+		if (value instanceof List) {
+			StringBuilder json = new StringBuilder("[");
+			for (Object each : (List<Object>) value) {
+				json.append(json.length() > 1 ? "," : "").append(toJson(each));
+			}
+			return json.append(']').toString();
+		}
+		if (value instanceof Number || value instanceof Boolean) {
+			return String.valueOf(value);
+		}
+		if (value == null) {
+			return "null";
+		}
+		return '"' + String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.benchmark;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * TraceGenerator produces an endless trace of mkdir, cd, ls, rm and pwd
+ * commands. It keeps its own model of the tree, so that commands mostly target
+ * existing directories like real traffic does. The same seed and settings
+ * always produce the same trace.
+ *
+ * All paths are absolute, so the trace can be replayed from any current
+ * directory.
+ */
+public class TraceGenerator {
+
+	/** RM_SHARE - share of rm among the writes, the rest are mkdir */
+	private static final double RM_SHARE = 0.2;
+
+	private final Random random;
+
+	private final int fanOut;
+
+	private final int maxDepth;
+
+	private final double readRatio;
+
+	/** model - the tree as it will be after the generated commands */
+	private final Directory<String> model = new Directory<>(DirectoryPaths.ROOT);
+
+	/** currentDirectory - current directory of the replaying session */
+	private Directory<String> currentDirectory = model;
+
+	/**
+	 * TraceGenerator creates a generator
+	 *
+	 * @param seed
+	 *            seed of the trace
+	 * @param fanOut
+	 *            maximum number of children per directory
+	 * @param maxDepth
+	 *            maximum depth of directories
+	 * @param readRatio
+	 *            share of cd, ls and pwd commands, between 0 and 1
+	 */
+	public TraceGenerator(long seed, int fanOut, int maxDepth, double readRatio) {
+		if (fanOut < 1 || maxDepth < 1 || readRatio < 0 || readRatio > 1) {
+			throw new IllegalArgumentException("fanOut and maxDepth must be positive, readRatio between 0 and 1");
+		}
+		this.random = new Random(seed);
+		this.fanOut = fanOut;
+		this.maxDepth = maxDepth;
+		this.readRatio = readRatio;
+	}
+
+	/**
+	 * next generates the next command of the trace
+	 *
+	 * @return command line
+	 */
+	public String next() {
+		if (random.nextDouble() < readRatio) {
+			return nextRead();
+		}
+		return random.nextDouble() < RM_SHARE ? nextRm() : nextMkdir();
+	}
+
+	private String nextRead() {
+		double choice = random.nextDouble();
+		if (choice < 0.5) {
+			return "ls";
+		}
+		if (choice < 0.7) {
+			return "pwd";
+		}
+		currentDirectory = pickDirectory(maxDepth);
+		return "cd " + DirectoryPaths.toAbsolutePath(currentDirectory);
+	}
+
+	private String nextMkdir() {
+		Directory<String> parent = pickDirectory(maxDepth - 1);
+		String dirName = "d" + random.nextInt(fanOut);
+		if (Objects.isNull(parent.getChild(dirName))) {
+			parent.createDirectory(new Directory<>(dirName));
+		}
+		return "mkdir " + DirectoryPaths.toChildPath(DirectoryPaths.toAbsolutePath(parent), dirName);
+	}
+
+	private String nextRm() {
+		Directory<String> directory = pickDirectory(maxDepth);
+		if (Objects.isNull(directory.getParent())) {
+			return nextMkdir();
+		}
+		if (!isAncestorOrEqual(directory, currentDirectory)) {
+			directory.getParent().removeDirectory(directory);
+		}
+		return "rm " + DirectoryPaths.toAbsolutePath(directory);
+	}
+
+	/**
+	 * pickDirectory walks down from root through random children to a random
+	 * depth, stopping early at directories without children
+	 *
+	 * @param depthLimit
+	 *            maximum depth of the picked directory
+	 * @return picked directory of the model
+	 */
+	private Directory<String> pickDirectory(int depthLimit) {
+		int depth = depthLimit <= 0 ? 0 : random.nextInt(depthLimit + 1);
+		Directory<String> directory = model;
+		for (int i = 0; i < depth; i++) {
+			List<Directory<String>> children = directory.getChildren();
+			if (children.isEmpty()) {
+				break;
+			}
+			directory = children.get(random.nextInt(children.size()));
+		}
+		return directory;
+	}
+
+	private boolean isAncestorOrEqual(Directory<String> ancestor, Directory<String> directory) {
+		for (Directory<String> each = directory; Objects.nonNull(each); each = each.getParent()) {
+			if (each == ancestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
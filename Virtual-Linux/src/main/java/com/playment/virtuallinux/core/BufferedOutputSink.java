@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BufferedOutputSink keeps messages in memory until they are flushed to another
+ * sink, preserving their order and level. It may be written and flushed from
+ * different threads.
+ */
+public class BufferedOutputSink implements OutputSink {
+
+	private final List<String> messages = new ArrayList<>();
+
+	/** errors - flags messages at the same index that are errors */
+	private final List<Boolean> errors = new ArrayList<>();
+
+	@Override
+	public synchronized void info(String message) {
+		messages.add(message);
+		errors.add(Boolean.FALSE);
+	}
+
+	@Override
+	public synchronized void error(String message) {
+		messages.add(message);
+		errors.add(Boolean.TRUE);
+	}
+
+	/**
+	 * flushTo prints buffered messages to given sink and empties the buffer
+	 * 
+	 * @param sink
+	 *            sink to print to
+	 */
+	public synchronized void flushTo(OutputSink sink) {
+		for (int i = 0; i < messages.size(); i++) {
+			if (errors.get(i)) {
+				sink.error(messages.get(i));
+			} else {
+				sink.info(messages.get(i));
+			}
+		}
+		messages.clear();
+		errors.clear();
+	}
+}
@@ -7,13 +7,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
-import org.apache.log4j.Logger;
-
+import com.playment.virtuallinux.replication.ReplicationApplier;
+import com.playment.virtuallinux.replication.ReplicationEntry;
+import com.playment.virtuallinux.replication.ReplicationNode;
 import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
 import com.playment.virtuallinux.type.SupportedCommands;
+import com.playment.virtuallinux.watch.WatchEvent;
+import com.playment.virtuallinux.watch.WatchRegistry;
+import com.playment.virtuallinux.watch.WatchSubscription;
 
 /**
  * CommandImplementer will handle logic for all the supported commands
@@ -22,9 +26,6 @@ import com.playment.virtuallinux.type.SupportedCommands;
  *
  */
 public class CommandImplementer {
-	/** The outputmsgLogger - Logger for logging outputs */
-	private static final Logger outputmsgLogger = Logger.getLogger("outputmsg");
-
 	/** EMPTY - to check for empty */
 	private static final String EMPTY = "";
 
@@ -34,28 +35,71 @@ public class CommandImplementer {
 	/** INVALID_PATH - literal */
 	private static final String INVALID_PATH = "ERR: INVALID PATH";
 
+	/** READ_ONLY - literal */
+	private static final String READ_ONLY = "ERR: READ ONLY FOLLOWER, RUN THIS COMMAND ON THE LEADER";
+
 	/** command - command given by user */
 	private String command;
 
 	/** currentDirectory - current directory in which user is on */
 	private Directory<String> currentDirectory;
 
+	/** replicationNode - replication role of this instance, null if standalone */
+	private ReplicationNode replicationNode;
+
+	/** output - sink of the session, also used for asynchronous outputs */
+	private OutputSink output = new LoggerOutputSink();
+
+	/** commandOutput - sink of the command being implemented */
+	private OutputSink commandOutput = output;
+
+	/** watchRegistry - watches notified of every directory created or removed */
+	private final WatchRegistry watchRegistry;
+
 	public CommandImplementer() {
 		currentDirectory = new Directory<>("/");
+		watchRegistry = new WatchRegistry();
+	}
+
+	/**
+	 * CommandImplementer creates a session sharing the tree, current directory and
+	 * replication role of given session
+	 * 
+	 * @param session
+	 *            session to share state with
+	 * @param output
+	 *            sink for outputs of the new session
+	 */
+	private CommandImplementer(CommandImplementer session, OutputSink output) {
+		this.currentDirectory = session.currentDirectory;
+		this.replicationNode = session.replicationNode;
+		this.watchRegistry = session.watchRegistry;
+		this.output = output;
+		this.commandOutput = output;
 	}
 
 	public CommandImplementer(String command) {
 		this.command = command;
 		currentDirectory = new Directory<>("/");
+		watchRegistry = new WatchRegistry();
 	}
 
 	/**
 	 * @return the currentDirectory user is in
 	 */
-	public Directory<String> getCurrentDirectory() {
+	public synchronized Directory<String> getCurrentDirectory() {
 		return currentDirectory;
 	}
 
+	/**
+	 * @param currentDirectory
+	 *            the current directory to move to, a directory of the tree of this
+	 *            session
+	 */
+	synchronized void setCurrentDirectory(Directory<String> currentDirectory) {
+		this.currentDirectory = currentDirectory;
+	}
+
 	/**
 	 * @param command
 	 *            the command to set
@@ -64,24 +108,109 @@ public class CommandImplementer {
 		this.command = command;
 	}
 
+	/**
+	 * @param replicationNode
+	 *            the replication role to set
+	 */
+	public void setReplicationNode(ReplicationNode replicationNode) {
+		this.replicationNode = replicationNode;
+	}
+
+	/**
+	 * @return the watchRegistry to subscribe to changes of the tree
+	 */
+	public WatchRegistry getWatchRegistry() {
+		return watchRegistry;
+	}
+
+	/**
+	 * @return the output sink commands print to
+	 */
+	public OutputSink getOutputSink() {
+		return output;
+	}
+
+	/**
+	 * @param output
+	 *            the output sink to set
+	 */
+	public synchronized void setOutputSink(OutputSink output) {
+		this.output = output;
+		this.commandOutput = output;
+	}
+
+	/**
+	 * fork creates a session that works on the same tree from the same current
+	 * directory, used to run independent commands in parallel. A cd only moves
+	 * the forked session, and forked sessions must not run session commands.
+	 * 
+	 * @param output
+	 *            sink for outputs of the forked session
+	 * @return forked session
+	 */
+	CommandImplementer fork(OutputSink output) {
+		return new CommandImplementer(this, output);
+	}
+
 	/**
 	 * implementCommand is a method used to implement all commands given by the
 	 * user. It checks for valid command and implements it using utility methods
 	 * 
+	 * It is synchronized with {@link #applyReplicated(ReplicationEntry)} so that a
+	 * follower can serve commands while the replication stream is being applied.
+	 * 
 	 */
-	public void implementCommand() {
-		List<String> commandPieces = new ArrayList<>();
-		commandPieces.addAll(Arrays.asList(command.split("\\s+")));
-		String commandKeyword = commandPieces.get(0).toLowerCase();
+	public synchronized void implementCommand() {
+		implementCommand(tokenize(command));
+	}
 
-		commandPieces.remove(0);
-		if (SupportedCommands.isSupported(commandKeyword)) {
-			commandSelector(commandKeyword, commandPieces);
-		} else {
-			outputmsgLogger.error("ERR: CANNOT RECOGNIZE INPUT");
+	/**
+	 * implementCommand implements a command already split into words by
+	 * {@link #tokenize(String)}, so that parsing can happen on another thread
+	 * 
+	 * @param commandPieces
+	 *            command keyword followed by its arguments
+	 */
+	public synchronized void implementCommand(List<String> commandPieces) {
+		implementCommand(commandPieces, output);
+	}
+
+	/**
+	 * implementCommand implements a command printing its outputs to given sink
+	 * instead of the session sink. Outputs printed later, such as watch events or
+	 * replication notices, still go to the session sink.
+	 * 
+	 * @param commandPieces
+	 *            command keyword followed by its arguments
+	 * @param commandOutput
+	 *            sink for the outputs of this command
+	 */
+	public synchronized void implementCommand(List<String> commandPieces, OutputSink commandOutput) {
+		this.commandOutput = commandOutput;
+		try {
+			String commandKeyword = commandPieces.get(0).toLowerCase();
+			List<String> commandArgs = new ArrayList<>(commandPieces.subList(1, commandPieces.size()));
+			if (SupportedCommands.isSupported(commandKeyword)) {
+				commandSelector(commandKeyword, commandArgs);
+			} else {
+				commandOutput.error("ERR: CANNOT RECOGNIZE INPUT");
+			}
+		} finally {
+			this.commandOutput = output;
 		}
 	}
 
+	/**
+	 * tokenize splits a trimmed command into its keyword and arguments
+	 * 
+	 * @param command
+	 *            command given by user
+	 * @return list of command pieces
+	 */
+	public static List<String> tokenize(String command) {
+		return new ArrayList<>(Arrays.asList(command.split("\\s+")));
+	}
+
 	/**
 	 * commandSelector is a method which directs user command to appropriate
 	 * function to handle corresponding logic.
@@ -96,40 +225,70 @@ public class CommandImplementer {
 
 		switch (SupportedCommands.getSupportedCommand(commandKeyword)) {
 		case PWD:
-			outputmsgLogger.info("PATH: " + executePwd(currentDirectory));
+			commandOutput.info("PATH: " + executePwd(currentDirectory));
 			break;
 		case LS:
 			executeLs();
 			break;
 		case MKDIR:
-			if (commandArgs.isEmpty()) {
-				outputmsgLogger.error(INVALID_ARGUMENTS);
+			if (isReadOnly()) {
+				commandOutput.error(READ_ONLY);
+			} else if (commandArgs.isEmpty()) {
+				commandOutput.error(INVALID_ARGUMENTS);
 			} else {
 				decideMkdirCommandMode(commandArgs);
 			}
 			break;
 		case CD:
 			if (commandArgs.isEmpty()) {
-				outputmsgLogger.error(INVALID_ARGUMENTS);
+				commandOutput.error(INVALID_ARGUMENTS);
 			} else {
 				decideCdCommandMode(commandArgs.get(0));
 			}
 			break;
 		case RM:
-			if (commandArgs.isEmpty()) {
-				outputmsgLogger.error(INVALID_ARGUMENTS);
+			if (isReadOnly()) {
+				commandOutput.error(READ_ONLY);
+			} else if (commandArgs.isEmpty()) {
+				commandOutput.error(INVALID_ARGUMENTS);
 			} else {
 				decideRmCommandMode(commandArgs);
 			}
 
 			break;
 		case SESSION:
-			if (commandArgs.isEmpty()) {
-				outputmsgLogger.error(INVALID_ARGUMENTS);
+			if (isReadOnly()) {
+				commandOutput.error(READ_ONLY);
+			} else if (commandArgs.isEmpty()) {
+				commandOutput.error(INVALID_ARGUMENTS);
 			} else {
 				executeSessionClear(commandArgs.get(0));
 			}
 			break;
+		case REPLICATION:
+			if (commandArgs.isEmpty() || !"status".equals(commandArgs.get(0))) {
+				commandOutput.error(INVALID_ARGUMENTS);
+			} else {
+				executeReplicationStatus();
+			}
+			break;
+		case WATCH:
+			executeWatch(commandArgs);
+			break;
+		case UNWATCH:
+			if (commandArgs.size() != 1) {
+				commandOutput.error(INVALID_ARGUMENTS);
+			} else {
+				executeUnwatch(commandArgs.get(0));
+			}
+			break;
+		case DIFF:
+			if (commandArgs.size() != 2) {
+				commandOutput.error(INVALID_ARGUMENTS);
+			} else {
+				executeDiff(commandArgs.get(0), commandArgs.get(1));
+			}
+			break;
 		}
 
 	}
@@ -159,9 +318,9 @@ public class CommandImplementer {
 		String dirNames = currentDirectory.getChildren().stream().map(Directory::getData)
 				.collect(Collectors.joining(" "));
 		if (EMPTY.equals(dirNames.trim())) {
-			outputmsgLogger.error("DIRS: NO DIRECTORY EXIST");
+			commandOutput.error("DIRS: NO DIRECTORY EXIST");
 		} else {
-			outputmsgLogger.info("DIRS: " + dirNames);
+			commandOutput.info("DIRS: " + dirNames);
 		}
 	}
 
@@ -221,16 +380,17 @@ public class CommandImplementer {
 	 */
 	private void executeMkdir(String command, boolean isExecuteOnRoot) {
 		List<String> commandPieces = splitReturn(command, "/");
-		Directory<String> root = isExecuteOnRoot ? getRoot(currentDirectory) : currentDirectory;
+		Directory<String> root = isExecuteOnRoot ? DirectoryPaths.getRoot(currentDirectory) : currentDirectory;
 		for (String dirName : commandPieces) {
 			if (!checkEmptyAndNull(dirName)) {
 				Directory<String> newdirectory = getDirectoryByName(dirName, root);
 
 				if (Objects.isNull(newdirectory)) {
 					newdirectory = root.createDirectory(new Directory<String>(dirName));
-					outputmsgLogger.info("SUCC: CREATED SUCCESSFULLY - FULL PATH: " + executePwd(newdirectory));
+					recordMutation(ReplicationEntry.Operation.MKDIR, newdirectory);
+					commandOutput.info("SUCC: CREATED SUCCESSFULLY - FULL PATH: " + executePwd(newdirectory));
 				} else {
-					outputmsgLogger.info("ERR: ALREADY EXISTED - FULL PATH: " + executePwd(newdirectory));
+					commandOutput.info("ERR: ALREADY EXISTED - FULL PATH: " + executePwd(newdirectory));
 				}
 				root = newdirectory;
 			}
@@ -259,10 +419,11 @@ public class CommandImplementer {
 	 */
 	private void executeMkdirCurrentSingle(String dirName) {
 		if (isDirectoryAlreadyExist(dirName)) {
-			outputmsgLogger.info("ERR: " + dirName + " ALREADY EXISTED");
+			commandOutput.info("ERR: " + dirName + " ALREADY EXISTED");
 		} else {
 			Directory<String> directory = currentDirectory.createDirectory(new Directory<String>(dirName));
-			outputmsgLogger.info("SUCC: CREATED SUCCESSFULLY - FULL PATH: " + executePwd(directory));
+			recordMutation(ReplicationEntry.Operation.MKDIR, directory);
+			commandOutput.info("SUCC: CREATED SUCCESSFULLY - FULL PATH: " + executePwd(directory));
 		}
 	}
 
@@ -297,9 +458,9 @@ public class CommandImplementer {
 		Directory<String> directory = getDirectoryByName(dirName);
 		if (Objects.nonNull(directory)) {
 			currentDirectory = directory;
-			outputmsgLogger.info("SUCC: REACHED: " + executePwd(directory));
+			commandOutput.info("SUCC: REACHED: " + executePwd(directory));
 		} else {
-			outputmsgLogger.error("ERR: INVALID DIRECTORY");
+			commandOutput.error("ERR: INVALID DIRECTORY");
 		}
 	}
 
@@ -326,28 +487,28 @@ public class CommandImplementer {
 		List<String> directories = splitReturn(commandArgs, "/");
 		if (directories.isEmpty()) {
 			if (commandArgs.trim().matches("/+")) {
-				currentDirectory = getRoot(currentDirectory);
-				outputmsgLogger.info("SUCC: REACHED TO ROOT DIRECTORY ");
+				currentDirectory = DirectoryPaths.getRoot(currentDirectory);
+				commandOutput.info("SUCC: REACHED TO ROOT DIRECTORY ");
 			}
 			return;
 		}
 
 		if (isPathAvailable(isExecuteFromRoot, directories)) {
-			currentDirectory = isExecuteFromRoot ? getRoot(currentDirectory) : currentDirectory;
+			currentDirectory = isExecuteFromRoot ? DirectoryPaths.getRoot(currentDirectory) : currentDirectory;
 			for (String dirName : directories) {
 				if (!checkEmptyAndNull(dirName)) {
 					Directory<String> directory = getDirectoryByName(dirName);
 					if (Objects.nonNull(directory)) {
 						currentDirectory = directory;
-						outputmsgLogger.info("SUCC: REACHED: " + executePwd(directory));
+						commandOutput.info("SUCC: REACHED: " + executePwd(directory));
 					} else {
-						outputmsgLogger.error(INVALID_PATH);
+						commandOutput.error(INVALID_PATH);
 						break;
 					}
 				}
 			}
 		} else {
-			outputmsgLogger.error(INVALID_PATH);
+			commandOutput.error(INVALID_PATH);
 		}
 	}
 
@@ -393,7 +554,7 @@ public class CommandImplementer {
 	 */
 	private void executeRm(String rmcommand, boolean isExecuteFromRoot) {
 		List<String> directories = removeEmptyAndNull(splitReturn(rmcommand, "/"));
-		Directory<String> root = isExecuteFromRoot ? getRoot(currentDirectory) : currentDirectory;
+		Directory<String> root = isExecuteFromRoot ? DirectoryPaths.getRoot(currentDirectory) : currentDirectory;
 		if (isPathAvailable(isExecuteFromRoot, directories)) {
 			for (String dirName : directories) {
 
@@ -402,14 +563,15 @@ public class CommandImplementer {
 			}
 			Directory<String> parent = root.getParent();
 			if (isRemovable(root, currentDirectory)) {
-				if (parent.getChildren().remove(root)) {
-					outputmsgLogger.info("SUCC: DELETED");
+				if (parent.removeDirectory(root)) {
+					recordMutation(ReplicationEntry.Operation.RM, root);
+					commandOutput.info("SUCC: DELETED");
 				}
 			} else {
-				outputmsgLogger.error("ERR: CANNOT REMOVE CURRENT DIRECTORY OR ITS PARENT");
+				commandOutput.error("ERR: CANNOT REMOVE CURRENT DIRECTORY OR ITS PARENT");
 			}
 		} else {
-			outputmsgLogger.error(INVALID_PATH);
+			commandOutput.error(INVALID_PATH);
 		}
 
 	}
@@ -429,14 +591,15 @@ public class CommandImplementer {
 	private void executeRm(String dirName) {
 		Directory<String> directory = getDirectoryByName(dirName);
 		if (Objects.isNull(directory)) {
-			outputmsgLogger.error("ERR: DIRECTORY DOESN'T EXIST");
+			commandOutput.error("ERR: DIRECTORY DOESN'T EXIST");
 			return;
 		}
-		boolean isRemoved = currentDirectory.getChildren().remove(directory);
+		boolean isRemoved = currentDirectory.removeDirectory(directory);
 		if (isRemoved) {
-			outputmsgLogger.info("SUCC: DELETED");
+			recordMutation(ReplicationEntry.Operation.RM, directory);
+			commandOutput.info("SUCC: DELETED");
 		} else {
-			outputmsgLogger.error("ERR: DIRECTORY DOESN'T EXIST");
+			commandOutput.error("ERR: DIRECTORY DOESN'T EXIST");
 		}
 	}
 
@@ -450,11 +613,225 @@ public class CommandImplementer {
 	private void executeSessionClear(String command) {
 		if (command.equals("clear")) {
 			currentDirectory = new Directory<>("/");
-			outputmsgLogger.info("SUCC: RESET TO ROOT /");
+			recordMutation(ReplicationEntry.Operation.CLEAR, currentDirectory);
+			commandOutput.info("SUCC: RESET TO ROOT /");
+		} else {
+			commandOutput.error("ERR: UNSUPPORTED ARGUMENTS.");
+		}
+
+	}
+
+	/**
+	 * executeReplicationStatus prints replication role, applied sequence and lag
+	 */
+	private void executeReplicationStatus() {
+		if (Objects.isNull(replicationNode)) {
+			commandOutput.info("ROLE: STANDALONE");
+		} else {
+			commandOutput.info(replicationNode.getStatus());
+		}
+	}
+
+	/**
+	 * executeWatch implements 'watch' command logic. It subscribes to creation
+	 * and removal of directories below given path and prints the events as they
+	 * are delivered.
+	 * 
+	 * 1. watch <path> - watches children of the path
+	 * 
+	 * 2. watch -r <path> - watches all descendants of the path
+	 * 
+	 * @param commandArgs
+	 *            path and optional '-r' flag
+	 */
+	private void executeWatch(List<String> commandArgs) {
+		List<String> paths = new ArrayList<>(commandArgs);
+		boolean isRecursive = paths.remove("-r");
+		if (paths.size() != 1) {
+			commandOutput.error(INVALID_ARGUMENTS);
+			return;
+		}
+		String path = resolvePath(paths.get(0));
+		boolean isWatched = watchRegistry.getSubscriptions().stream()
+				.anyMatch(subscription -> subscription.getPath().equals(path)
+						&& subscription.isRecursive() == isRecursive);
+		if (isWatched) {
+			commandOutput.error("ERR: ALREADY WATCHING " + path);
+			return;
+		}
+		OutputSink eventOutput = output;
+		watchRegistry.subscribe(path, isRecursive,
+				events -> events.forEach(event -> eventOutput.info("EVENT: " + event)));
+		commandOutput.info("SUCC: WATCHING " + path + (isRecursive ? " RECURSIVELY" : ""));
+	}
+
+	/**
+	 * executeUnwatch implements 'unwatch' command logic. It stops all watches on
+	 * given path.
+	 * 
+	 * @param commandArgs
+	 *            path to stop watching
+	 */
+	private void executeUnwatch(String commandArgs) {
+		String path = resolvePath(commandArgs);
+		boolean isRemoved = false;
+		for (WatchSubscription subscription : watchRegistry.getSubscriptions()) {
+			if (subscription.getPath().equals(path)) {
+				isRemoved |= watchRegistry.unsubscribe(subscription);
+			}
+		}
+		if (isRemoved) {
+			commandOutput.info("SUCC: STOPPED WATCHING " + path);
 		} else {
-			outputmsgLogger.error("ERR: UNSUPPORTED ARGUMENTS.");
+			commandOutput.error("ERR: NOT WATCHING " + path);
 		}
+	}
+
+	/**
+	 * executeDiff implements 'diff' command logic. It prints the directories
+	 * present below only one of the two given paths. Identical subtrees are
+	 * skipped using their content hashes.
+	 * 
+	 * Example - 'diff /tenantA /tenantB' prints 'DIFF: ONLY IN /tenantA:
+	 * /tenantA/hiring' for a directory missing in tenantB
+	 * 
+	 * @param firstPath
+	 *            first path, from root or current directory
+	 * @param secondPath
+	 *            second path, from root or current directory
+	 */
+	private void executeDiff(String firstPath, String secondPath) {
+		String first = resolvePath(firstPath);
+		String second = resolvePath(secondPath);
+		Directory<String> root = DirectoryPaths.getRoot(currentDirectory);
+		Directory<String> firstDirectory = DirectoryPaths.findDirectory(root, first);
+		Directory<String> secondDirectory = DirectoryPaths.findDirectory(root, second);
+		if (Objects.isNull(firstDirectory) || Objects.isNull(secondDirectory)) {
+			commandOutput.error(INVALID_PATH);
+			return;
+		}
+
+		List<TreeDiff.Difference> differences = TreeDiff.diff(firstDirectory, secondDirectory);
+		if (differences.isEmpty()) {
+			commandOutput.info("SUCC: NO DIFFERENCE");
+		}
+		for (TreeDiff.Difference difference : differences) {
+			String base = difference.getSide() == TreeDiff.Side.FIRST ? first : second;
+			String prefix = "/".equals(base) ? "" : base;
+			commandOutput.info("DIFF: ONLY IN " + base + ": " + prefix + difference.getPath());
+		}
+	}
 
+	/**
+	 * resolvePath resolves a path argument from root or current directory
+	 * 
+	 * @param commandArgs
+	 *            path argument
+	 * @return absolute path such as /playment/hiring
+	 */
+	private String resolvePath(String commandArgs) {
+		return DirectoryPaths.resolve(DirectoryPaths.toAbsolutePath(currentDirectory), commandArgs);
+	}
+
+	/**
+	 * applyReplicated applies an entry of the leader's replication stream to the
+	 * tree of this follower. If the entry removes the current directory or one of
+	 * its ancestors, the session is moved to the closest remaining ancestor.
+	 * 
+	 * @param entry
+	 *            entry to apply
+	 */
+	public synchronized void applyReplicated(ReplicationEntry entry) {
+		String currentPath = DirectoryPaths.toAbsolutePath(currentDirectory);
+		Directory<String> root = DirectoryPaths.getRoot(currentDirectory);
+		Directory<String> newRoot = ReplicationApplier.apply(root, entry);
+		if (watchRegistry.isWatched()) {
+			watchRegistry.publish(entry.getOperation() == ReplicationEntry.Operation.MKDIR ? WatchEvent.Type.CREATED
+					: WatchEvent.Type.DELETED, entry.getPath());
+		}
+		if (newRoot != root) {
+			currentDirectory = newRoot;
+		} else if (entry.getOperation() == ReplicationEntry.Operation.RM
+				&& DirectoryPaths.isAncestorOrEqual(entry.getPath(), currentPath)) {
+			currentDirectory = findClosestDirectory(root, currentPath);
+			output.info("INFO: CURRENT DIRECTORY REMOVED ON LEADER, MOVED TO " + executePwd(currentDirectory));
+		}
+	}
+
+	/**
+	 * loadCheckpoint replaces the tree of this follower by a checkpoint of the
+	 * leader. The session stays in its current directory if it still exists.
+	 * Watchers get an OVERFLOW event, as the changes are not known one by one.
+	 * 
+	 * @param paths
+	 *            absolute paths of all directories, parents before children
+	 */
+	public synchronized void loadCheckpoint(List<String> paths) {
+		String currentPath = DirectoryPaths.toAbsolutePath(currentDirectory);
+		Directory<String> root = new Directory<>(DirectoryPaths.ROOT);
+		for (String path : paths) {
+			ReplicationApplier.apply(root, new ReplicationEntry(0, 0, ReplicationEntry.Operation.MKDIR, path));
+		}
+		currentDirectory = findClosestDirectory(root, currentPath);
+		if (watchRegistry.isWatched()) {
+			watchRegistry.publishOverflow();
+		}
+	}
+
+	/**
+	 * findClosestDirectory finds the directory of given path, or its deepest
+	 * existing ancestor
+	 * 
+	 * @param root
+	 *            root of the tree
+	 * @param path
+	 *            absolute path
+	 * @return Directory closest to the path
+	 */
+	private Directory<String> findClosestDirectory(Directory<String> root, String path) {
+		Directory<String> directory = root;
+		for (String dirName : DirectoryPaths.toComponents(path)) {
+			Directory<String> child = directory.getChild(dirName);
+			if (Objects.isNull(child)) {
+				break;
+			}
+			directory = child;
+		}
+		return directory;
+	}
+
+	/**
+	 * recordMutation hands a successful mutation to the replication log, if this
+	 * instance is a leader, and to the watches. The path is only built when
+	 * somebody consumes it.
+	 * 
+	 * @param operation
+	 *            mutation performed
+	 * @param directory
+	 *            directory created or removed
+	 */
+	private void recordMutation(ReplicationEntry.Operation operation, Directory<String> directory) {
+		boolean isWatched = watchRegistry.isWatched();
+		if (Objects.isNull(replicationNode) && !isWatched) {
+			return;
+		}
+		String path = DirectoryPaths.toAbsolutePath(directory);
+		if (Objects.nonNull(replicationNode)) {
+			replicationNode.record(operation, path);
+		}
+		if (isWatched) {
+			watchRegistry.publish(operation == ReplicationEntry.Operation.MKDIR ? WatchEvent.Type.CREATED
+					: WatchEvent.Type.DELETED, path);
+		}
+	}
+
+	/**
+	 * isReadOnly checks whether this instance is a read-only follower
+	 * 
+	 * @return true if mutating commands are rejected
+	 */
+	boolean isReadOnly() {
+		return Objects.nonNull(replicationNode) && replicationNode.isReadOnly();
 	}
 
 	/**
@@ -468,7 +845,7 @@ public class CommandImplementer {
 	 * @return true if it is an valid path
 	 */
 	private boolean isPathAvailable(boolean isExecuteFromRoot, List<String> directories) {
-		Directory<String> root = isExecuteFromRoot ? getRoot(currentDirectory) : currentDirectory;
+		Directory<String> root = isExecuteFromRoot ? DirectoryPaths.getRoot(currentDirectory) : currentDirectory;
 
 		boolean isExists = false;
 		for (String dirName : directories) {
@@ -495,7 +872,7 @@ public class CommandImplementer {
 	 * @return true if it exists
 	 */
 	private boolean isDirectoryAlreadyExist(String dirName) {
-		return currentDirectory.getChildren().stream().anyMatch(directory -> directory.getData().equals(dirName));
+		return Objects.nonNull(currentDirectory.getChild(dirName));
 	}
 
 	/**
@@ -507,9 +884,7 @@ public class CommandImplementer {
 	 * @return Directory if it exists
 	 */
 	private Directory<String> getDirectoryByName(String dirName) {
-		Optional<Directory<String>> directory = currentDirectory.getChildren().stream()
-				.filter(dir -> dir.getData().equals(dirName)).findFirst();
-		return directory.isPresent() ? directory.get() : null;
+		return currentDirectory.getChild(dirName);
 	}
 
 	/**
@@ -523,23 +898,7 @@ public class CommandImplementer {
 	 * @return Directory if it exists
 	 */
 	private Directory<String> getDirectoryByName(String dirName, Directory<String> lookupDirectory) {
-		Optional<Directory<String>> directory = lookupDirectory.getChildren().stream()
-				.filter(dir -> dir.getData().equals(dirName)).findFirst();
-		return directory.isPresent() ? directory.get() : null;
-	}
-
-	/**
-	 * getRoot is a utility method which gets root from the given directory.
-	 * 
-	 * @param directory
-	 *            dirName to get root
-	 * @return Directory root directory
-	 */
-	private Directory<String> getRoot(Directory<String> directory) {
-		if (Objects.isNull(directory.getParent())) {
-			return directory;
-		}
-		return getRoot(directory.getParent());
+		return lookupDirectory.getChild(dirName);
 	}
 
 	/**
@@ -0,0 +1,281 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * CommandPipeline runs commands read from a stream in three stages, each on
+ * its own thread:
+ *
+ * 1. reader - decodes and tokenizes input lines
+ *
+ * 2. executor - applies the commands to the tree, the only stage touching it
+ *
+ * 3. output - prints the outputs of the commands
+ *
+ * Stages are connected by bounded queues, so a slow stage blocks the ones
+ * before it instead of buffering the whole input. Commands and their outputs
+ * keep input order. Outputs printed after a command returns, such as watch
+ * events, go straight to the session sink. The time each stage spends working,
+ * not waiting on its queues, is measured. The reader also waits on the input,
+ * which is measured apart from its work.
+ */
+public class CommandPipeline {
+
+	/** DEFAULT_QUEUE_CAPACITY - commands buffered between two stages */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** END - marks the end of the input in the command queue */
+	private static final List<String> END = Collections.emptyList();
+
+	/** END_OUTPUT - marks the end of the input in the output queue */
+	private static final BufferedOutputSink END_OUTPUT = new BufferedOutputSink();
+
+	private final CommandImplementer session;
+
+	private final BlockingQueue<List<String>> commands;
+
+	private final BlockingQueue<BufferedOutputSink> outputs;
+
+	private long readerBusyNanos;
+
+	private long inputWaitNanos;
+
+	private long executorBusyNanos;
+
+	private long outputBusyNanos;
+
+	private long commandCount;
+
+	private volatile RuntimeException failure;
+
+	public CommandPipeline(CommandImplementer session) {
+		this(session, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public CommandPipeline(CommandImplementer session, int queueCapacity) {
+		this.session = session;
+		this.commands = new ArrayBlockingQueue<>(queueCapacity);
+		this.outputs = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	/**
+	 * run runs all commands of the input until its end or an 'exit' line, and
+	 * returns once all outputs are printed
+	 *
+	 * @param input
+	 *            input with one command per line
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the stages
+	 */
+	public void run(InputStream input) throws InterruptedException {
+		OutputSink sink = session.getOutputSink();
+		Thread reader = startStage("pipeline-reader", () -> read(input));
+		Thread executor = startStage("pipeline-executor", this::execute);
+		Thread printer = startStage("pipeline-output", () -> print(sink));
+		reader.join();
+		executor.join();
+		printer.join();
+		if (Objects.nonNull(failure)) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @return time the reader stage spent decoding and tokenizing
+	 */
+	public long getReaderBusyNanos() {
+		return readerBusyNanos;
+	}
+
+	/**
+	 * @return time the reader stage spent waiting for the input to deliver bytes
+	 */
+	public long getInputWaitNanos() {
+		return inputWaitNanos;
+	}
+
+	/**
+	 * @return time the executor stage spent applying commands
+	 */
+	public long getExecutorBusyNanos() {
+		return executorBusyNanos;
+	}
+
+	/**
+	 * @return time the output stage spent printing
+	 */
+	public long getOutputBusyNanos() {
+		return outputBusyNanos;
+	}
+
+	/**
+	 * @return number of commands executed
+	 */
+	public long getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * read decodes and tokenizes input lines into the command queue
+	 *
+	 * @param input
+	 *            input with one command per line
+	 * @throws InterruptedException
+	 *             if interrupted while the queue is full
+	 */
+	private void read(InputStream input) throws InterruptedException {
+		TimedInputStream timedInput = new TimedInputStream(input);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(timedInput, StandardCharsets.UTF_8), 1 << 16);
+		try {
+			long start = System.nanoTime();
+			for (String line = reader.readLine(); Objects.nonNull(line); line = reader.readLine()) {
+				String command = line.trim();
+				if (command.equals("exit")) {
+					break;
+				}
+				if (!command.isEmpty()) {
+					List<String> commandPieces = CommandImplementer.tokenize(command);
+					readerBusyNanos += System.nanoTime() - start;
+					commands.put(commandPieces);
+					start = System.nanoTime();
+				}
+			}
+			readerBusyNanos += System.nanoTime() - start;
+		} catch (IOException e) {
+			fail(new IllegalStateException("Cannot read input", e));
+		} finally {
+			inputWaitNanos = timedInput.readNanos;
+			readerBusyNanos -= inputWaitNanos;
+			commands.put(END);
+		}
+	}
+
+	/**
+	 * execute applies commands of the command queue to the tree, collecting the
+	 * output of each command into the output queue. After a failure the remaining
+	 * commands are drained without being applied.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting on a queue
+	 */
+	private void execute() throws InterruptedException {
+		try {
+			for (List<String> commandPieces = commands.take(); commandPieces != END; commandPieces = commands
+					.take()) {
+				if (Objects.nonNull(failure)) {
+					continue;
+				}
+				long start = System.nanoTime();
+				BufferedOutputSink output = new BufferedOutputSink();
+				try {
+					session.implementCommand(commandPieces, output);
+					commandCount++;
+				} catch (RuntimeException e) {
+					fail(e);
+				}
+				executorBusyNanos += System.nanoTime() - start;
+				outputs.put(output);
+			}
+		} finally {
+			outputs.put(END_OUTPUT);
+		}
+	}
+
+	/**
+	 * print prints outputs of the output queue in order. After a failure the
+	 * remaining outputs are drained without being printed.
+	 *
+	 * @param sink
+	 *            sink to print to
+	 * @throws InterruptedException
+	 *             if interrupted while waiting on the queue
+	 */
+	private void print(OutputSink sink) throws InterruptedException {
+		for (BufferedOutputSink output = outputs.take(); output != END_OUTPUT; output = outputs.take()) {
+			if (Objects.nonNull(failure)) {
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				output.flushTo(sink);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+			outputBusyNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * TimedInputStream measures the time spent in the reads of the underlying
+	 * input, which includes waiting for a slow producer on the other end of a pipe
+	 */
+	private static class TimedInputStream extends FilterInputStream {
+
+		private long readNanos;
+
+		TimedInputStream(InputStream input) {
+			super(input);
+		}
+
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			try {
+				return super.read();
+			} finally {
+				readNanos += System.nanoTime() - start;
+			}
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			long start = System.nanoTime();
+			try {
+				return super.read(buffer, offset, length);
+			} finally {
+				readNanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+	/**
+	 * Stage is the body of a pipeline thread
+	 */
+	@FunctionalInterface
+	private interface Stage {
+		void run() throws InterruptedException;
+	}
+
+	private Thread startStage(String name, Stage stage) {
+		Thread thread = new Thread(() -> {
+			try {
+				stage.run();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}, name);
+		thread.start();
+		return thread;
+	}
+
+	private synchronized void fail(RuntimeException e) {
+		if (Objects.isNull(failure)) {
+			failure = e;
+		}
+	}
+}
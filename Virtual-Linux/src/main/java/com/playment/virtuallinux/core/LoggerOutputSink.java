@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package com.playment.virtuallinux.core;
+
+import org.apache.log4j.Logger;
+
+/**
+ * LoggerOutputSink prints messages to the console through the outputmsg logger
+ */
+public class LoggerOutputSink implements OutputSink {
+	/** The outputmsgLogger - Logger for logging outputs */
+	private static final Logger outputmsgLogger = Logger.getLogger("outputmsg");
+
+	@Override
+	public void info(String message) {
+		outputmsgLogger.info(message);
+	}
+
+	@Override
+	public void error(String message) {
+		outputmsgLogger.error(message);
+	}
+}
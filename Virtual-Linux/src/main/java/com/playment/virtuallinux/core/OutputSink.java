@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package com.playment.virtuallinux.core;
+
+/**
+ * OutputSink receives the messages printed by commands. It lets the same
+ * command logic print to the console or to a buffer which is printed later.
+ */
+public interface OutputSink {
+
+	/**
+	 * info prints a regular message
+	 * 
+	 * @param message
+	 *            message to print
+	 */
+	void info(String message);
+
+	/**
+	 * error prints an error message
+	 * 
+	 * @param message
+	 *            message to print
+	 */
+	void error(String message);
+}
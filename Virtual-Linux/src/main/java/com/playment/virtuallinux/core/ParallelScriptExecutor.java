@@ -0,0 +1,415 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * ParallelScriptExecutor runs a script of commands on multiple cores while
+ * producing the same tree and the same output as running it line by line.
+ *
+ * Commands are planned in windows. The planner follows cd through the window,
+ * so every command knows the current directory it runs in and every mkdir, rm
+ * and ls argument resolves to an absolute path. Each command gets a footprint
+ * of path accesses, and a command only waits for the earlier commands of the
+ * window whose footprint conflicts with its own. Creating or removing children
+ * of the same directory always conflicts, so the order of children, and hence
+ * of ls output, is the serial one.
+ *
+ * session, mkdir or rm without arguments and every other command are barriers:
+ * the window is drained and they run alone on the session. Outputs are buffered
+ * per command and printed in script order.
+ */
+public class ParallelScriptExecutor {
+
+	/** DEFAULT_WINDOW_SIZE - maximum commands planned together */
+	public static final int DEFAULT_WINDOW_SIZE = 256;
+
+	/**
+	 * AccessKind lists the ways a command accesses a path
+	 */
+	private enum AccessKind {
+		/** EXISTS - looks up the path */
+		EXISTS,
+		/** LIST - reads the children of the path */
+		LIST,
+		/** CHILDREN - adds or removes a child of the path */
+		CHILDREN,
+		/** SUBTREE - creates or removes the path with everything below */
+		SUBTREE
+	}
+
+	/**
+	 * Access is a single path access of a command footprint
+	 */
+	private static class Access {
+
+		private final AccessKind kind;
+
+		private final String path;
+
+		Access(AccessKind kind, String path) {
+			this.kind = kind;
+			this.path = path;
+		}
+	}
+
+	private final CommandImplementer session;
+
+	private final int threads;
+
+	private final int windowSize;
+
+	public ParallelScriptExecutor(CommandImplementer session, int threads) {
+		this(session, threads, DEFAULT_WINDOW_SIZE);
+	}
+
+	public ParallelScriptExecutor(CommandImplementer session, int threads, int windowSize) {
+		if (threads < 1 || windowSize < 1) {
+			throw new IllegalArgumentException("threads and windowSize must be positive");
+		}
+		this.session = session;
+		this.threads = threads;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * execute runs given script lines. Empty lines are skipped and 'exit' ends
+	 * the script.
+	 *
+	 * @param lines
+	 *            script lines
+	 */
+	public void execute(List<String> lines) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "script-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			synchronized (session) {
+				executeAll(lines, pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * executeAll splits the script into windows and barriers and runs them in
+	 * order
+	 *
+	 * @param lines
+	 *            script lines
+	 * @param pool
+	 *            workers
+	 */
+	private void executeAll(List<String> lines, ExecutorService pool) {
+		List<String> window = new ArrayList<>();
+		for (String line : lines) {
+			String command = line.trim();
+			if (command.isEmpty()) {
+				continue;
+			}
+			if (command.equals("exit")) {
+				break;
+			}
+			if (isBarrier(command)) {
+				executeWindow(window, pool);
+				window.clear();
+				session.setCommand(command);
+				session.implementCommand();
+			} else {
+				window.add(command);
+				if (window.size() == windowSize) {
+					executeWindow(window, pool);
+					window.clear();
+				}
+			}
+		}
+		executeWindow(window, pool);
+	}
+
+	/**
+	 * executeWindow plans and runs a window of commands, then prints their outputs
+	 * in order
+	 *
+	 * @param window
+	 *            commands without barriers
+	 * @param pool
+	 *            workers
+	 */
+	private void executeWindow(List<String> window, ExecutorService pool) {
+		if (window.isEmpty()) {
+			return;
+		}
+		Directory<String> root = DirectoryPaths.getRoot(session.getCurrentDirectory());
+		String currentPath = DirectoryPaths.toAbsolutePath(session.getCurrentDirectory());
+		boolean isReadOnly = session.isReadOnly();
+		Map<String, Boolean> created = new HashMap<>();
+		Set<String> cleared = new HashSet<>();
+
+		List<List<Access>> footprints = new ArrayList<>(window.size());
+		List<CompletableFuture<Void>> futures = new ArrayList<>(window.size());
+		List<BufferedOutputSink> outputs = new ArrayList<>(window.size());
+		for (String command : window) {
+			List<String> commandPieces = CommandImplementer.tokenize(command);
+			List<Access> footprint = plan(commandPieces, root, currentPath, isReadOnly, created, cleared);
+			List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+			for (int i = 0; i < footprints.size(); i++) {
+				if (conflicts(footprint, footprints.get(i))) {
+					dependencies.add(futures.get(i));
+				}
+			}
+
+			BufferedOutputSink output = new BufferedOutputSink();
+			CommandImplementer fork = session.fork(output);
+			fork.setCommand(command);
+			String commandPath = currentPath;
+			Runnable task = () -> {
+				fork.setCurrentDirectory(DirectoryPaths.findDirectory(root, commandPath));
+				fork.implementCommand();
+			};
+			CompletableFuture<Void> future = dependencies.isEmpty() ? CompletableFuture.runAsync(task, pool)
+					: CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).thenRunAsync(task,
+							pool);
+			if ("cd".equals(commandPieces.get(0).toLowerCase())) {
+				currentPath = planCd(commandPieces.get(1), root, currentPath, created, cleared);
+			}
+			footprints.add(footprint);
+			futures.add(future);
+			outputs.add(output);
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+			outputs.get(i).flushTo(session.getOutputSink());
+		}
+		session.setCurrentDirectory(DirectoryPaths.findDirectory(root, currentPath));
+	}
+
+	/**
+	 * plan computes the footprint of a command and records the directories it
+	 * creates or removes for the commands planned after it. Every command looks
+	 * up its current directory when it starts, so that directory is part of the
+	 * footprint.
+	 *
+	 * @param commandPieces
+	 *            ls, pwd, or cd, mkdir or rm command with arguments
+	 * @param root
+	 *            root of the tree
+	 * @param currentPath
+	 *            current directory the command runs in
+	 * @param isReadOnly
+	 *            set if mkdir and rm are rejected
+	 * @param created
+	 *            paths created (true) or removed (false) by earlier commands
+	 * @param cleared
+	 *            paths removed by earlier commands, nothing below them remains
+	 * @return footprint of the command
+	 */
+	private List<Access> plan(List<String> commandPieces, Directory<String> root, String currentPath,
+			boolean isReadOnly, Map<String, Boolean> created, Set<String> cleared) {
+		String commandKeyword = commandPieces.get(0).toLowerCase();
+		List<Access> footprint = new ArrayList<>();
+		footprint.add(new Access(AccessKind.EXISTS, currentPath));
+		if ("ls".equals(commandKeyword)) {
+			footprint.add(new Access(AccessKind.LIST, currentPath));
+			return footprint;
+		}
+		if ("cd".equals(commandKeyword)) {
+			footprint.add(new Access(AccessKind.EXISTS, DirectoryPaths.resolve(currentPath, commandPieces.get(1))));
+			return footprint;
+		}
+		if ("pwd".equals(commandKeyword) || isReadOnly) {
+			return footprint;
+		}
+
+		for (String argument : commandPieces.subList(1, commandPieces.size())) {
+			List<String> path = DirectoryPaths.toPrefixes(DirectoryPaths.resolve(currentPath, argument));
+			if (path.size() == 1) {
+				continue;
+			}
+			String target = path.get(path.size() - 1);
+			if ("rm".equals(commandKeyword)) {
+				footprint.add(new Access(AccessKind.SUBTREE, target));
+				footprint.add(new Access(AccessKind.CHILDREN, path.get(path.size() - 2)));
+				if (exists(target, root, created, cleared) && !DirectoryPaths.isAncestorOrEqual(target, currentPath)) {
+					created.keySet().removeIf(createdPath -> DirectoryPaths.isAncestorOrEqual(target, createdPath));
+					created.put(target, Boolean.FALSE);
+					cleared.add(target);
+				}
+			} else {
+				planMkdir(path, root, created, cleared, footprint);
+			}
+		}
+		return footprint;
+	}
+
+	/**
+	 * planMkdir adds the footprint of creating given path. Only the first missing
+	 * directory of the path and its parent are written, the existing part of the
+	 * path is only looked up.
+	 *
+	 * @param path
+	 *            prefixes of the path from root
+	 * @param root
+	 *            root of the tree
+	 * @param created
+	 *            paths created or removed by earlier commands
+	 * @param cleared
+	 *            paths removed by earlier commands
+	 * @param footprint
+	 *            footprint to add to
+	 */
+	private void planMkdir(List<String> path, Directory<String> root, Map<String, Boolean> created,
+			Set<String> cleared, List<Access> footprint) {
+		for (int i = 1; i < path.size(); i++) {
+			if (!exists(path.get(i), root, created, cleared)) {
+				footprint.add(new Access(AccessKind.EXISTS, path.get(i - 1)));
+				footprint.add(new Access(AccessKind.CHILDREN, path.get(i - 1)));
+				footprint.add(new Access(AccessKind.SUBTREE, path.get(i)));
+				for (int j = i; j < path.size(); j++) {
+					created.put(path.get(j), Boolean.TRUE);
+				}
+				return;
+			}
+		}
+		footprint.add(new Access(AccessKind.EXISTS, path.get(path.size() - 1)));
+	}
+
+	/**
+	 * planCd finds the current directory after a cd the same way
+	 * {@link CommandImplementer} moves: to root for '/', to the target if the
+	 * whole path exists once the earlier commands have run, otherwise nowhere
+	 *
+	 * @param argument
+	 *            cd argument
+	 * @param root
+	 *            root of the tree
+	 * @param currentPath
+	 *            current directory before the cd
+	 * @param created
+	 *            paths created or removed by earlier commands
+	 * @param cleared
+	 *            paths removed by earlier commands
+	 * @return current directory after the cd
+	 */
+	private String planCd(String argument, Directory<String> root, String currentPath, Map<String, Boolean> created,
+			Set<String> cleared) {
+		String target = DirectoryPaths.resolve(currentPath, argument);
+		if (DirectoryPaths.ROOT.equals(target)) {
+			return argument.startsWith(DirectoryPaths.ROOT) ? target : currentPath;
+		}
+		return exists(target, root, created, cleared) ? target : currentPath;
+	}
+
+	/**
+	 * exists checks whether a path exists once the earlier commands of the window
+	 * have run
+	 *
+	 * @param path
+	 *            path to check
+	 * @param root
+	 *            root of the tree before the window
+	 * @param created
+	 *            paths created or removed by earlier commands
+	 * @param cleared
+	 *            paths removed by earlier commands
+	 * @return true if the path exists
+	 */
+	private boolean exists(String path, Directory<String> root, Map<String, Boolean> created, Set<String> cleared) {
+		Boolean isCreated = created.get(path);
+		if (Objects.nonNull(isCreated)) {
+			return isCreated;
+		}
+		for (String prefix : DirectoryPaths.toPrefixes(path)) {
+			if (cleared.contains(prefix)) {
+				return false;
+			}
+		}
+		return Objects.nonNull(DirectoryPaths.findDirectory(root, path));
+	}
+
+	/**
+	 * conflicts checks whether two footprints have to run in script order
+	 *
+	 * @param footprint
+	 *            footprint of the later command
+	 * @param earlier
+	 *            footprint of the earlier command
+	 * @return true if any of the accesses conflict
+	 */
+	private boolean conflicts(List<Access> footprint, List<Access> earlier) {
+		for (Access access : footprint) {
+			for (Access earlierAccess : earlier) {
+				if (conflicts(access, earlierAccess) || conflicts(earlierAccess, access)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * conflicts checks whether the first access changes what the second one sees
+	 *
+	 * @param writer
+	 *            access that may write
+	 * @param other
+	 *            other access
+	 * @return true if they conflict
+	 */
+	private boolean conflicts(Access writer, Access other) {
+		if (writer.kind == AccessKind.SUBTREE) {
+			return DirectoryPaths.isAncestorOrEqual(writer.path, other.path);
+		}
+		if (writer.kind == AccessKind.CHILDREN) {
+			return (other.kind == AccessKind.CHILDREN || other.kind == AccessKind.LIST)
+					&& writer.path.equals(other.path);
+		}
+		return false;
+	}
+
+	/**
+	 * isBarrier checks whether a command must run alone on the session. Only the
+	 * argument shapes {@link #plan} knows are planned: ls and pwd, whose arguments
+	 * are ignored, and cd, mkdir or rm with at least one argument. The target of a
+	 * cd is always known, as the planner tracks every directory the window creates
+	 * or removes.
+	 *
+	 * @param command
+	 *            trimmed command
+	 * @return true unless it is ls, pwd, or cd, mkdir or rm with arguments
+	 */
+	private boolean isBarrier(String command) {
+		List<String> commandPieces = CommandImplementer.tokenize(command);
+		String commandKeyword = commandPieces.get(0).toLowerCase();
+		if ("ls".equals(commandKeyword) || "pwd".equals(commandKeyword)) {
+			return false;
+		}
+		return !(("cd".equals(commandKeyword) || "mkdir".equals(commandKeyword) || "rm".equals(commandKeyword))
+				&& commandPieces.size() > 1);
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.playment.virtuallinux.type.Directory;
+
+/**
+ * TreeDiff compares two directory trees using their content hashes. Subtrees
+ * with equal hashes are skipped without being visited, so the cost depends on
+ * the number of differences instead of the size of the trees.
+ *
+ * The trees may belong to the same session, for example two tenant
+ * directories, or to different ones such as a checkpoint and a live tree.
+ */
+public final class TreeDiff {
+
+	private TreeDiff() {
+	}
+
+	/**
+	 * Side tells which of the compared trees has a directory
+	 */
+	public enum Side {
+		FIRST, SECOND
+	}
+
+	/**
+	 * Difference is a directory present in one tree only. Its subtree is not
+	 * reported separately.
+	 */
+	public static class Difference {
+
+		private final Side side;
+
+		private final String path;
+
+		public Difference(Side side, String path) {
+			this.side = side;
+			this.path = path;
+		}
+
+		public Side getSide() {
+			return side;
+		}
+
+		/**
+		 * @return path relative to the compared directory, such as /hiring/success
+		 */
+		public String getPath() {
+			return path;
+		}
+	}
+
+	/**
+	 * diff lists directories present below only one of the given directories. The
+	 * names of the given directories themselves are not compared.
+	 *
+	 * @param first
+	 *            first directory
+	 * @param second
+	 *            second directory
+	 * @return differences in depth-first order
+	 */
+	public static List<Difference> diff(Directory<String> first, Directory<String> second) {
+		List<Difference> differences = new ArrayList<>();
+		diff(first, second, "", differences);
+		return differences;
+	}
+
+	/**
+	 * diff compares the children of two directories with different content
+	 * hashes and descends into the pairs which still differ
+	 *
+	 * @param first
+	 *            directory of the first tree
+	 * @param second
+	 *            directory of the second tree
+	 * @param path
+	 *            relative path of both directories
+	 * @param differences
+	 *            differences found so far
+	 */
+	private static void diff(Directory<String> first, Directory<String> second, String path,
+			List<Difference> differences) {
+		if (first.getContentHash() == second.getContentHash()) {
+			return;
+		}
+		Map<String, Directory<String>> secondChildren = new LinkedHashMap<>();
+		for (Directory<String> child : second.getChildren()) {
+			secondChildren.put(child.getData(), child);
+		}
+		for (Directory<String> child : first.getChildren()) {
+			Directory<String> match = secondChildren.remove(child.getData());
+			if (match == null) {
+				differences.add(new Difference(Side.FIRST, path + "/" + child.getData()));
+			} else {
+				diff(child, match, path + "/" + child.getData(), differences);
+			}
+		}
+		for (String dirName : secondChildren.keySet()) {
+			differences.add(new Difference(Side.SECOND, path + "/" + dirName));
+		}
+	}
+}
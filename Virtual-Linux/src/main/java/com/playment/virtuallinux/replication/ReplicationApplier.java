@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * ReplicationApplier applies replicated entries to a directory tree. It is
+ * shared by the leader, which folds old log entries into its checkpoint, and by
+ * the followers, which replay the stream in order.
+ */
+public final class ReplicationApplier {
+
+	private ReplicationApplier() {
+	}
+
+	/**
+	 * apply applies given entry to the tree. Applying is idempotent, creating an
+	 * existing directory or removing a missing one is ignored.
+	 *
+	 * @param root
+	 *            root of the tree to apply on
+	 * @param entry
+	 *            entry to apply
+	 * @return root of the tree after applying, which is a new root for CLEAR
+	 */
+	public static Directory<String> apply(Directory<String> root, ReplicationEntry entry) {
+		switch (entry.getOperation()) {
+		case MKDIR:
+			Directory<String> parent = root;
+			for (String dirName : DirectoryPaths.toComponents(entry.getPath())) {
+				Directory<String> directory = parent.getChild(dirName);
+				parent = Objects.isNull(directory) ? parent.createDirectory(new Directory<>(dirName)) : directory;
+			}
+			return root;
+		case RM:
+			Directory<String> directory = DirectoryPaths.findDirectory(root, entry.getPath());
+			if (Objects.nonNull(directory) && Objects.nonNull(directory.getParent())) {
+				directory.getParent().removeDirectory(directory);
+			}
+			return root;
+		case CLEAR:
+		default:
+			return new Directory<>(DirectoryPaths.ROOT);
+		}
+	}
+
+	/**
+	 * collectPaths lists absolute paths of all directories below root in pre-order,
+	 * so that replaying them as MKDIR rebuilds the tree with the same children
+	 * order.
+	 *
+	 * @param root
+	 *            root of the tree
+	 * @return absolute paths, parents before children
+	 */
+	public static List<String> collectPaths(Directory<String> root) {
+		List<String> paths = new ArrayList<>();
+		Deque<Directory<String>> stack = new ArrayDeque<>();
+		Deque<String> pathStack = new ArrayDeque<>();
+		for (int i = root.getChildren().size() - 1; i >= 0; i--) {
+			stack.push(root.getChildren().get(i));
+			pathStack.push(DirectoryPaths.ROOT + root.getChildren().get(i).getData());
+		}
+		while (!stack.isEmpty()) {
+			Directory<String> directory = stack.pop();
+			String path = pathStack.pop();
+			paths.add(path);
+			List<Directory<String>> children = directory.getChildren();
+			for (int i = children.size() - 1; i >= 0; i--) {
+				stack.push(children.get(i));
+				pathStack.push(path + "/" + children.get(i).getData());
+			}
+		}
+		return paths;
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+/**
+ * ReplicationEntry is a single mutating command in the replication log. Paths
+ * are always stored as absolute paths so that followers can apply them without
+ * knowing the current directory of the leader session.
+ */
+public class ReplicationEntry {
+
+	/**
+	 * Operation lists the mutations which are shipped to followers
+	 */
+	public enum Operation {
+		MKDIR, RM, CLEAR
+	}
+
+	/** WIRE_PREFIX - prefix of an entry line in the replication stream */
+	static final String WIRE_PREFIX = "ENTRY";
+
+	private final long sequence;
+
+	private final long timestamp;
+
+	private final Operation operation;
+
+	private final String path;
+
+	public ReplicationEntry(long sequence, long timestamp, Operation operation, String path) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.operation = operation;
+		this.path = path;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * toWire formats the entry as a single line of the replication stream
+	 *
+	 * @return entry line without line terminator
+	 */
+	public String toWire() {
+		return WIRE_PREFIX + " " + sequence + " " + timestamp + " " + operation + " " + path;
+	}
+
+	/**
+	 * fromWire parses an entry line written by {@link #toWire()}
+	 *
+	 * @param line
+	 *            entry line of the replication stream
+	 * @return parsed entry
+	 */
+	public static ReplicationEntry fromWire(String line) {
+		String[] pieces = line.split(" ", 5);
+		if (pieces.length != 5 || !WIRE_PREFIX.equals(pieces[0])) {
+			throw new IllegalArgumentException("Malformed replication entry: " + line);
+		}
+		return new ReplicationEntry(Long.parseLong(pieces[1]), Long.parseLong(pieces[2]),
+				Operation.valueOf(pieces[3]), pieces[4]);
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.log4j.Logger;
+
+import com.playment.virtuallinux.core.CommandImplementer;
+
+/**
+ * ReplicationFollower connects to a leader on the local machine and applies its
+ * replication stream, in order, to a read-only {@link CommandImplementer}. It
+ * reconnects on failure and resumes from the last applied sequence, loading a
+ * checkpoint first whenever the leader has already compacted that part of the
+ * log or is a different run than the one the sequence belongs to.
+ */
+public class ReplicationFollower implements ReplicationNode {
+	/** The outputmsgLogger - Logger for logging outputs */
+	private static final Logger outputmsgLogger = Logger.getLogger("outputmsg");
+
+	/** RECONNECT_MILLIS - wait time before reconnecting to leader */
+	private static final long RECONNECT_MILLIS = 1000;
+
+	/** NO_EPOCH - epoch sent before any checkpoint was loaded */
+	private static final String NO_EPOCH = "NONE";
+
+	private final CommandImplementer commandImplementer;
+
+	private final int leaderPort;
+
+	private volatile boolean connected = false;
+
+	private volatile boolean stopped = false;
+
+	private volatile Socket socket;
+
+	/** leaderEpoch - epoch of the leader log appliedSequence belongs to */
+	private volatile String leaderEpoch = NO_EPOCH;
+
+	private volatile long appliedSequence = 0;
+
+	private volatile long leaderSequence = 0;
+
+	/** lagMillis - time between the leader appending and us applying an entry */
+	private volatile long lagMillis = 0;
+
+	public ReplicationFollower(CommandImplementer commandImplementer, int leaderPort) {
+		this.commandImplementer = commandImplementer;
+		this.leaderPort = leaderPort;
+	}
+
+	/**
+	 * start starts following the leader in background
+	 */
+	public void start() {
+		Thread applier = new Thread(this::follow, "replication-applier");
+		applier.setDaemon(true);
+		applier.start();
+	}
+
+	/**
+	 * stop disconnects from the leader and stops reconnecting
+	 */
+	public void stop() {
+		stopped = true;
+		Socket connection = socket;
+		if (Objects.nonNull(connection)) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public void record(ReplicationEntry.Operation operation, String path) {
+		// followers never mutate their tree locally
+	}
+
+	@Override
+	public String getStatus() {
+		return "ROLE: FOLLOWER - CONNECTED: " + connected + " - APPLIED: " + appliedSequence + " - LEADER: "
+				+ leaderSequence + " - LAG: " + Math.max(0, leaderSequence - appliedSequence) + " ENTRIES, "
+				+ lagMillis + " MS";
+	}
+
+	/**
+	 * @return sequence of the last applied entry
+	 */
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * follow keeps a connection to the leader open until the process exits
+	 */
+	private void follow() {
+		while (!stopped) {
+			try (Socket connection = new Socket(InetAddress.getLoopbackAddress(), leaderPort)) {
+				socket = connection;
+				if (stopped) {
+					return;
+				}
+				// while no leader listens, a local connection can be made to itself
+				if (connection.getLocalPort() != leaderPort) {
+					connected = true;
+					outputmsgLogger.info("INFO: CONNECTED TO LEADER ON PORT " + leaderPort);
+					replicate(connection);
+				}
+			} catch (IOException | RuntimeException e) {
+				// leader not reachable or stream broken, retry below
+			}
+			if (connected) {
+				connected = false;
+				outputmsgLogger.info("INFO: DISCONNECTED FROM LEADER, RESUMING FROM SEQUENCE " + appliedSequence);
+			}
+			try {
+				Thread.sleep(RECONNECT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * replicate requests the stream from the last applied sequence and applies it
+	 *
+	 * @param socket
+	 *            connection to the leader
+	 * @throws IOException
+	 *             if connection is lost
+	 */
+	private void replicate(Socket socket) throws IOException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+		writer.write("SYNC " + leaderEpoch + " " + appliedSequence);
+		writer.newLine();
+		writer.flush();
+
+		for (String line = reader.readLine(); Objects.nonNull(line); line = reader.readLine()) {
+			if (line.startsWith(ReplicationEntry.WIRE_PREFIX)) {
+				ReplicationEntry entry = ReplicationEntry.fromWire(line);
+				if (entry.getSequence() == appliedSequence + 1) {
+					commandImplementer.applyReplicated(entry);
+					appliedSequence = entry.getSequence();
+					lagMillis = Math.max(0, System.currentTimeMillis() - entry.getTimestamp());
+				} else if (entry.getSequence() > appliedSequence) {
+					throw new IOException("Gap in replication stream at sequence " + entry.getSequence());
+				}
+			} else if (line.startsWith("HEAD ")) {
+				String[] pieces = line.split(" ");
+				leaderSequence = Long.parseLong(pieces[1]);
+				if (appliedSequence >= leaderSequence) {
+					lagMillis = 0;
+				}
+				writer.write("ACK " + appliedSequence);
+				writer.newLine();
+				writer.flush();
+			} else if (line.startsWith("CHECKPOINT ")) {
+				String[] pieces = line.split(" ");
+				long sequence = Long.parseLong(pieces[2]);
+				int count = Integer.parseInt(pieces[3]);
+				List<String> paths = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					String path = reader.readLine();
+					if (Objects.isNull(path)) {
+						throw new IOException("Checkpoint truncated");
+					}
+					paths.add(path);
+				}
+				commandImplementer.loadCheckpoint(paths);
+				appliedSequence = sequence;
+				leaderEpoch = pieces[1];
+			}
+		}
+	}
+}
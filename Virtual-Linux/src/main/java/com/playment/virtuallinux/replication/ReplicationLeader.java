@@ -0,0 +1,240 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * ReplicationLeader accepts followers on a local socket and streams the
+ * replication log to each of them.
+ *
+ * Protocol (one line per message):
+ *
+ * follower: 'SYNC <epoch> <sequence>' once after connecting, 'ACK <sequence>'
+ * after every applied batch
+ *
+ * leader: 'CHECKPOINT <epoch> <sequence> <count>' followed by count paths,
+ * 'ENTRY ...' (see {@link ReplicationEntry#toWire()}), 'HEAD <sequence>
+ * <timestamp>' after every batch and as heartbeat
+ *
+ * A follower whose epoch is not the one of the leader's log, because it never
+ * synced or followed an earlier run of the leader, gets a checkpoint first.
+ */
+public class ReplicationLeader implements ReplicationNode {
+	/** The outputmsgLogger - Logger for logging outputs */
+	private static final Logger outputmsgLogger = Logger.getLogger("outputmsg");
+
+	/** HEARTBEAT_MILLIS - maximum time between two messages to a follower */
+	private static final long HEARTBEAT_MILLIS = 1000;
+
+	private final ReplicationLog replicationLog;
+
+	private final ServerSocket serverSocket;
+
+	/** followerAcks - last acknowledged sequence by follower address */
+	private final Map<String, Long> followerAcks = new ConcurrentHashMap<>();
+
+	/** connections - open follower connections, closed on stop */
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+	private volatile Thread acceptor;
+
+	public ReplicationLeader(ReplicationLog replicationLog, int port) throws IOException {
+		this.replicationLog = replicationLog;
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * start starts accepting followers in background
+	 */
+	public void start() {
+		acceptor = new Thread(this::acceptFollowers, "replication-leader");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * stop stops accepting followers and disconnects the connected ones. The port
+	 * is released once it returns.
+	 */
+	public void stop() {
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// already closed
+		}
+		// the socket is only released once the accepting thread has left accept
+		if (Objects.nonNull(acceptor)) {
+			try {
+				acceptor.join(HEARTBEAT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (Socket connection : connections) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	/**
+	 * @return port the leader listens on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public void record(ReplicationEntry.Operation operation, String path) {
+		replicationLog.append(operation, path);
+	}
+
+	@Override
+	public String getStatus() {
+		long lastSequence = replicationLog.getLastSequence();
+		long maxLag = followerAcks.values().stream().mapToLong(ack -> lastSequence - ack).max().orElse(0);
+		return "ROLE: LEADER - SEQUENCE: " + lastSequence + " - CHECKPOINT: "
+				+ replicationLog.getCheckpointSequence() + " - FOLLOWERS: " + followerAcks.size() + " - MAX LAG: "
+				+ maxLag + " ENTRIES";
+	}
+
+	/**
+	 * acceptFollowers accepts followers and serves each of them on its own thread
+	 */
+	private void acceptFollowers() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				connections.add(socket);
+				Thread follower = new Thread(() -> serveFollower(socket), "replication-follower-" + socket.getPort());
+				follower.setDaemon(true);
+				follower.start();
+			} catch (IOException e) {
+				outputmsgLogger.error("ERR: REPLICATION LEADER STOPPED - " + e.getMessage());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * serveFollower streams the checkpoint, if needed, and the log tail to a
+	 * follower until it disconnects
+	 *
+	 * @param socket
+	 *            connected follower
+	 */
+	private void serveFollower(Socket socket) {
+		String follower = socket.getRemoteSocketAddress().toString();
+		try (Socket connection = socket;
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+				BufferedWriter writer = new BufferedWriter(
+						new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+			String sync = reader.readLine();
+			if (Objects.isNull(sync) || !sync.startsWith("SYNC ") || sync.split(" ").length != 3) {
+				return;
+			}
+			String[] pieces = sync.split(" ");
+			long sent = Long.parseLong(pieces[2]);
+			if (!replicationLog.getEpoch().equals(pieces[1])) {
+				sent = writeCheckpoint(writer);
+			}
+			followerAcks.put(follower, sent);
+			startAckReader(reader, follower);
+			outputmsgLogger.info("INFO: FOLLOWER CONNECTED " + follower + " FROM SEQUENCE " + sent);
+
+			while (!connection.isClosed()) {
+				List<ReplicationEntry> entries = replicationLog.awaitEntriesAfter(sent, HEARTBEAT_MILLIS);
+				if (Objects.isNull(entries) || sent > replicationLog.getLastSequence()) {
+					sent = writeCheckpoint(writer);
+					continue;
+				}
+				for (ReplicationEntry entry : entries) {
+					writer.write(entry.toWire());
+					writer.newLine();
+					sent = entry.getSequence();
+				}
+				writer.write("HEAD " + replicationLog.getLastSequence() + " " + System.currentTimeMillis());
+				writer.newLine();
+				writer.flush();
+			}
+		} catch (IOException | RuntimeException e) {
+			outputmsgLogger.info("INFO: FOLLOWER DISCONNECTED " + follower);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			followerAcks.remove(follower);
+			connections.remove(socket);
+		}
+	}
+
+	/**
+	 * writeCheckpoint sends the current checkpoint to a follower
+	 *
+	 * @param writer
+	 *            follower stream
+	 * @return sequence of the checkpoint sent
+	 * @throws IOException
+	 *             if follower is gone
+	 */
+	private long writeCheckpoint(BufferedWriter writer) throws IOException {
+		ReplicationLog.Checkpoint checkpoint = replicationLog.getCheckpoint();
+		writer.write("CHECKPOINT " + replicationLog.getEpoch() + " " + checkpoint.getSequence() + " "
+				+ checkpoint.getPaths().size());
+		writer.newLine();
+		for (String path : checkpoint.getPaths()) {
+			writer.write(path);
+			writer.newLine();
+		}
+		return checkpoint.getSequence();
+	}
+
+	/**
+	 * startAckReader keeps track of acknowledgements sent by a follower
+	 *
+	 * @param reader
+	 *            follower stream
+	 * @param follower
+	 *            follower address
+	 */
+	private void startAckReader(BufferedReader reader, String follower) {
+		Thread ackReader = new Thread(() -> {
+			try {
+				for (String line = reader.readLine(); Objects.nonNull(line); line = reader.readLine()) {
+					if (line.startsWith("ACK ")) {
+						long acked = Long.parseLong(line.substring(4).trim());
+						followerAcks.computeIfPresent(follower, (key, ack) -> acked);
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				// follower thread notices the broken connection on its next write
+			}
+		}, "replication-ack-" + follower);
+		ackReader.setDaemon(true);
+		ackReader.start();
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * ReplicationLog keeps the ordered sequence of mutating commands of the leader.
+ * It is made of a checkpoint, a private copy of the tree as of
+ * {@link #getCheckpointSequence()}, and the tail of entries after it. When the
+ * tail grows beyond its limit the oldest half is folded into the checkpoint, so
+ * memory stays bounded while a follower can always catch up from the
+ * checkpoint plus the tail.
+ *
+ * Every log has a random epoch. Sequence numbers only mean something within
+ * one epoch, so a follower of a restarted leader has to load a checkpoint
+ * instead of resuming from its sequence.
+ *
+ * All methods but {@link #getCheckpoint()} are synchronized on the log.
+ * Followers are woken up when new entries are appended. Compaction only moves
+ * entries out of the tail; applying them to the checkpoint tree and listing its
+ * paths for a follower are done by a background thread and by
+ * {@link #getCheckpoint()} under a separate lock, so appends never wait for
+ * work proportional to the tree.
+ */
+public class ReplicationLog {
+
+	/** DEFAULT_MAX_TAIL_SIZE - entries kept before compaction */
+	public static final int DEFAULT_MAX_TAIL_SIZE = 100_000;
+
+	/** MAX_BATCH_SIZE - maximum entries handed out per read */
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private final int maxTailSize;
+
+	private final String epoch = UUID.randomUUID().toString();
+
+	private final List<ReplicationEntry> tail = new ArrayList<>();
+
+	private long checkpointSequence = 0;
+
+	/** unfolded - entries compacted out of the tail but not applied to the tree */
+	private List<ReplicationEntry> unfolded = new ArrayList<>();
+
+	/** isFolding - whether a background thread is applying unfolded entries */
+	private boolean isFolding = false;
+
+	/** checkpointLock - guards checkpoint, treeSequence and checkpointSnapshot */
+	private final ReentrantLock checkpointLock = new ReentrantLock();
+
+	private Directory<String> checkpoint = new Directory<>(DirectoryPaths.ROOT);
+
+	/** treeSequence - sequence number checkpoint tree is at */
+	private long treeSequence = 0;
+
+	/** checkpointSnapshot - paths of the tree, listed on demand */
+	private Checkpoint checkpointSnapshot = new Checkpoint(0, Collections.<String>emptyList());
+
+	private long lastSequence = 0;
+
+	public ReplicationLog() {
+		this(DEFAULT_MAX_TAIL_SIZE);
+	}
+
+	public ReplicationLog(int maxTailSize) {
+		if (maxTailSize < 2) {
+			throw new IllegalArgumentException("maxTailSize must be at least 2");
+		}
+		this.maxTailSize = maxTailSize;
+	}
+
+	/**
+	 * Checkpoint is an immutable snapshot of the tree at a sequence number
+	 */
+	public static class Checkpoint {
+
+		private final long sequence;
+
+		private final List<String> paths;
+
+		public Checkpoint(long sequence, List<String> paths) {
+			this.sequence = sequence;
+			this.paths = Collections.unmodifiableList(paths);
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return absolute paths of all directories, parents before children
+		 */
+		public List<String> getPaths() {
+			return paths;
+		}
+	}
+
+	/**
+	 * append adds a new mutation at the end of the log
+	 *
+	 * @param operation
+	 *            mutation performed
+	 * @param path
+	 *            absolute path of the directory mutated
+	 * @return appended entry
+	 */
+	public synchronized ReplicationEntry append(ReplicationEntry.Operation operation, String path) {
+		ReplicationEntry entry = new ReplicationEntry(++lastSequence, System.currentTimeMillis(), operation, path);
+		tail.add(entry);
+		if (tail.size() > maxTailSize) {
+			compact(tail.size() / 2);
+		}
+		notifyAll();
+		return entry;
+	}
+
+	/**
+	 * awaitEntriesAfter returns the entries following given sequence, waiting up
+	 * to timeout for new entries if there are none yet.
+	 *
+	 * @param sequence
+	 *            last sequence the reader already has
+	 * @param timeoutMillis
+	 *            maximum time to wait for new entries
+	 * @return entries after sequence, possibly empty, or null if they have been
+	 *         folded into the checkpoint and the reader has to load it first
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized List<ReplicationEntry> awaitEntriesAfter(long sequence, long timeoutMillis)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long remaining = timeoutMillis;
+		while (lastSequence <= sequence && remaining > 0) {
+			wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+		if (sequence < checkpointSequence) {
+			return null;
+		}
+		int from = (int) (sequence - checkpointSequence);
+		int to = Math.min(tail.size(), from + MAX_BATCH_SIZE);
+		return from >= to ? Collections.emptyList() : new ArrayList<>(tail.subList(from, to));
+	}
+
+	/**
+	 * getCheckpoint lists the paths of the checkpoint. The listing is cached until
+	 * the next compaction, and done without holding the log so appends go on.
+	 *
+	 * @return snapshot of the checkpoint
+	 */
+	public Checkpoint getCheckpoint() {
+		checkpointLock.lock();
+		try {
+			foldUnfolded();
+			if (checkpointSnapshot.getSequence() != treeSequence) {
+				checkpointSnapshot = new Checkpoint(treeSequence, ReplicationApplier.collectPaths(checkpoint));
+			}
+			return checkpointSnapshot;
+		} finally {
+			checkpointLock.unlock();
+		}
+	}
+
+	/**
+	 * @return epoch of this log, different for every leader run
+	 */
+	public String getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return sequence number the checkpoint is taken at
+	 */
+	public synchronized long getCheckpointSequence() {
+		return checkpointSequence;
+	}
+
+	/**
+	 * @return sequence number of the latest entry
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * compact moves oldest entries of the tail into the checkpoint. A background
+	 * thread applies them to the checkpoint tree.
+	 *
+	 * @param count
+	 *            number of entries to fold
+	 */
+	private void compact(int count) {
+		List<ReplicationEntry> folded = tail.subList(0, count);
+		unfolded.addAll(folded);
+		checkpointSequence += count;
+		folded.clear();
+		if (!isFolding) {
+			isFolding = true;
+			Thread folder = new Thread(this::foldInBackground, "replication-compactor");
+			folder.setDaemon(true);
+			folder.start();
+		}
+	}
+
+	/**
+	 * foldInBackground applies compacted entries to the checkpoint tree until
+	 * there are none left
+	 */
+	private void foldInBackground() {
+		while (true) {
+			checkpointLock.lock();
+			try {
+				synchronized (this) {
+					if (unfolded.isEmpty()) {
+						isFolding = false;
+						return;
+					}
+				}
+				foldUnfolded();
+			} finally {
+				checkpointLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * foldUnfolded applies the compacted entries pending so far to the checkpoint
+	 * tree. The caller holds the checkpoint lock, the log is only held to take
+	 * the entries.
+	 */
+	private void foldUnfolded() {
+		List<ReplicationEntry> entries;
+		long sequence;
+		synchronized (this) {
+			entries = unfolded;
+			sequence = checkpointSequence;
+			unfolded = new ArrayList<>();
+		}
+		for (ReplicationEntry entry : entries) {
+			checkpoint = ReplicationApplier.apply(checkpoint, entry);
+		}
+		treeSequence = sequence;
+	}
+}
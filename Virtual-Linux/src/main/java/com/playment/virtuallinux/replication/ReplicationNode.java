@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+/**
+ * ReplicationNode is the role a {@code CommandImplementer} plays in log
+ * shipping replication, either leader or read-only follower.
+ */
+public interface ReplicationNode {
+
+	/**
+	 * @return true if mutating commands must be rejected on this node
+	 */
+	boolean isReadOnly();
+
+	/**
+	 * record is called after a mutation has been applied to the local tree
+	 *
+	 * @param operation
+	 *            mutation performed
+	 * @param path
+	 *            absolute path of the directory mutated
+	 */
+	void record(ReplicationEntry.Operation operation, String path);
+
+	/**
+	 * @return single line status of the node including replication lag
+	 */
+	String getStatus();
+}
@@ -10,6 +10,14 @@ import java.util.List;
  * Directory is primary part of file system implentation. It keeps track of its
  * structure and its childrens
  * 
+ * Creating, removing and looking up children is synchronized on the directory
+ * so that commands on independent subtrees can run in parallel.
+ * 
+ * Every directory has a content hash over the names and content hashes of its
+ * children, so that two subtrees with the same hash have the same structure.
+ * Changes only mark the hashes of the parent chain as stale, they are
+ * recomputed on the next {@link #getContentHash()}.
+ * 
  * @author Vignesh Baskaran
  *
  */
@@ -21,19 +29,100 @@ public class Directory<T> {
 
 	private Directory<T> parent = null;
 
+	/** hashStale - set if contentHash must be recomputed, then set on all ancestors too */
+	private volatile boolean hashStale = true;
+
+	private long contentHash;
+
 	public Directory(T data) {
 		this.data = data;
 	}
 
-	public Directory<T> createDirectory(Directory<T> directory) {
+	public synchronized Directory<T> createDirectory(Directory<T> directory) {
 		directory.setParent(this);
 		this.children.add(directory);
+		invalidateHash();
 		return directory;
 	}
 
-	public void createDirectories(List<Directory<T>> directories) {
+	public synchronized void createDirectories(List<Directory<T>> directories) {
 		directories.forEach(each -> each.setParent(this));
 		this.children.addAll(directories);
+		invalidateHash();
+	}
+
+	public synchronized Directory<T> getChild(T data) {
+		for (Directory<T> child : children) {
+			if (child.getData().equals(data)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	public synchronized boolean removeDirectory(Directory<T> directory) {
+		boolean isRemoved = this.children.remove(directory);
+		if (isRemoved) {
+			invalidateHash();
+		}
+		return isRemoved;
+	}
+
+	/**
+	 * getContentHash returns the hash of the subtree below this directory, not
+	 * including its own name. It only visits directories changed since the last
+	 * call.
+	 * 
+	 * @return content hash
+	 */
+	public synchronized long getContentHash() {
+		if (hashStale) {
+			hashStale = false;
+			long sum = 0;
+			for (Directory<T> child : children) {
+				sum += child.getHash();
+			}
+			contentHash = mix(sum + children.size() * 0x9E3779B97F4A7C15L);
+		}
+		return contentHash;
+	}
+
+	/**
+	 * getHash returns the hash of this directory including its name. Children
+	 * hashes are summed up, so the order of children does not matter.
+	 * 
+	 * @return hash of name and content
+	 */
+	public long getHash() {
+		return mix(hashData() * 31 + getContentHash());
+	}
+
+	/**
+	 * invalidateHash marks the hash of this directory and its ancestors as stale,
+	 * stopping at the first one already stale
+	 */
+	private void invalidateHash() {
+		for (Directory<T> directory = this; directory != null && !directory.hashStale; directory = directory.parent) {
+			directory.hashStale = true;
+		}
+	}
+
+	private long hashData() {
+		if (data instanceof CharSequence) {
+			CharSequence name = (CharSequence) data;
+			long hash = 0xCBF29CE484222325L;
+			for (int i = 0; i < name.length(); i++) {
+				hash = (hash ^ name.charAt(i)) * 0x100000001B3L;
+			}
+			return hash;
+		}
+		return data == null ? 0 : data.hashCode();
+	}
+
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
 	}
 
 	public List<Directory<T>> getChildren() {
@@ -46,6 +135,9 @@ public class Directory<T> {
 
 	public void setData(T data) {
 		this.data = data;
+		if (parent != null) {
+			parent.invalidateHash();
+		}
 	}
 
 	private void setParent(Directory<T> parent) {
@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * DirectoryPaths resolves absolute paths such as /playment/hiring against a
+ * directory tree. Commands, replication, watches and the parallel planner all
+ * use it, so that a path means the same everywhere.
+ */
+public final class DirectoryPaths {
+
+	/** ROOT - name and path of the root directory */
+	public static final String ROOT = "/";
+
+	private DirectoryPaths() {
+	}
+
+	/**
+	 * getRoot gets the root of the tree given directory belongs to
+	 *
+	 * @param directory
+	 *            any directory of the tree
+	 * @return root directory
+	 */
+	public static Directory<String> getRoot(Directory<String> directory) {
+		Directory<String> root = directory;
+		while (Objects.nonNull(root.getParent())) {
+			root = root.getParent();
+		}
+		return root;
+	}
+
+	/**
+	 * findDirectory looks up directory by its absolute path
+	 *
+	 * @param root
+	 *            root of the tree
+	 * @param path
+	 *            absolute path
+	 * @return Directory if it exists, otherwise null
+	 */
+	public static Directory<String> findDirectory(Directory<String> root, String path) {
+		Directory<String> directory = root;
+		for (String dirName : toComponents(path)) {
+			directory = directory.getChild(dirName);
+			if (Objects.isNull(directory)) {
+				return null;
+			}
+		}
+		return directory;
+	}
+
+	/**
+	 * toAbsolutePath builds the absolute path of given directory
+	 *
+	 * @param directory
+	 *            directory to build path for
+	 * @return absolute path such as /playment/hiring
+	 */
+	public static String toAbsolutePath(Directory<String> directory) {
+		if (Objects.isNull(directory.getParent())) {
+			return ROOT;
+		}
+		StringBuilder path = new StringBuilder();
+		for (Directory<String> each = directory; Objects.nonNull(each.getParent()); each = each.getParent()) {
+			path.insert(0, each.getData()).insert(0, ROOT);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * toComponents splits a path into directory names
+	 *
+	 * @param path
+	 *            absolute or relative path
+	 * @return directory names, empty for root itself
+	 */
+	public static List<String> toComponents(String path) {
+		List<String> components = new ArrayList<>();
+		for (String dirName : path.split(ROOT)) {
+			if (!dirName.trim().isEmpty()) {
+				components.add(dirName);
+			}
+		}
+		return components;
+	}
+
+	/**
+	 * resolve resolves a command argument from root, if it starts with '/', or
+	 * from the current directory
+	 *
+	 * @param currentPath
+	 *            absolute path of the current directory
+	 * @param argument
+	 *            path argument
+	 * @return absolute path such as /playment/hiring
+	 */
+	public static String resolve(String currentPath, String argument) {
+		String path = argument.startsWith(ROOT) ? ROOT : currentPath;
+		for (String dirName : toComponents(argument)) {
+			path = toChildPath(path, dirName);
+		}
+		return path;
+	}
+
+	/**
+	 * toChildPath builds the absolute path of a child
+	 *
+	 * @param parentPath
+	 *            absolute path of the parent
+	 * @param dirName
+	 *            name of the child
+	 * @return absolute path of the child
+	 */
+	public static String toChildPath(String parentPath, String dirName) {
+		return ROOT.equals(parentPath) ? ROOT + dirName : parentPath + ROOT + dirName;
+	}
+
+	/**
+	 * toPrefixes lists an absolute path and all its ancestors
+	 *
+	 * @param path
+	 *            absolute path such as /a/b
+	 * @return prefixes such as /, /a, /a/b
+	 */
+	public static List<String> toPrefixes(String path) {
+		List<String> prefixes = new ArrayList<>();
+		prefixes.add(ROOT);
+		for (int i = path.indexOf('/', 1); i > 0; i = path.indexOf('/', i + 1)) {
+			prefixes.add(path.substring(0, i));
+		}
+		if (!ROOT.equals(path)) {
+			prefixes.add(path);
+		}
+		return prefixes;
+	}
+
+	/**
+	 * isAncestorOrEqual checks whether a path is the same as or above another one
+	 *
+	 * @param ancestor
+	 *            absolute path of the ancestor
+	 * @param path
+	 *            absolute path
+	 * @return true if ancestor is path or one of its ancestors
+	 */
+	public static boolean isAncestorOrEqual(String ancestor, String path) {
+		return ancestor.equals(path) || ROOT.equals(ancestor) || path.startsWith(ancestor + ROOT);
+	}
+}
@@ -10,7 +10,9 @@ import java.util.Arrays;
  *
  */
 public enum SupportedCommands {
-	PWD("pwd"), LS("ls"), MKDIR("mkdir"), CD("cd"), RM("rm"), SESSION("session");
+	PWD("pwd"), LS("ls"), MKDIR("mkdir"), CD("cd"), RM("rm"), SESSION("session"),
+	REPLICATION("replication"), WATCH("watch"), UNWATCH("unwatch"),
+	DIFF("diff");
 
 	private String command;
 
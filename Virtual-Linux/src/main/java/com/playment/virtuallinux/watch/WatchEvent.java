@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package com.playment.virtuallinux.watch;
+
+/**
+ * WatchEvent is a change delivered to watchers. A DELETED event stands for the
+ * whole subtree of its path, descendants are never reported one by one.
+ */
+public class WatchEvent {
+
+	/**
+	 * Type lists the kinds of events
+	 */
+	public enum Type {
+		/** CREATED - directory created */
+		CREATED,
+		/** DELETED - directory and everything below it removed */
+		DELETED,
+		/** OVERFLOW - events were dropped, the watcher has to list the path again */
+		OVERFLOW
+	}
+
+	private final Type type;
+
+	private final String path;
+
+	/** coalesced - number of events this event stands for */
+	private final long coalesced;
+
+	public WatchEvent(Type type, String path) {
+		this(type, path, 1);
+	}
+
+	public WatchEvent(Type type, String path, long coalesced) {
+		this.type = type;
+		this.path = path;
+		this.coalesced = coalesced;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return number of published events folded into this one
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	@Override
+	public String toString() {
+		return coalesced > 1 ? type + " " + path + " (" + coalesced + " EVENTS)" : type + " " + path;
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ * 
+ */
+package com.playment.virtuallinux.watch;
+
+import java.util.List;
+
+/**
+ * WatchListener receives batches of events of a subscription. It is called on
+ * the delivery thread of the subscription, never concurrently with itself.
+ */
+@FunctionalInterface
+public interface WatchListener {
+
+	/**
+	 * onEvents handles a batch of events in publishing order
+	 * 
+	 * @param events
+	 *            events of the batch
+	 */
+	void onEvents(List<WatchEvent> events);
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.watch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WatchRegistry keeps the watches on a directory tree and routes published
+ * events to them. Subscriptions are kept in a copy-on-write array, so
+ * publishing only reads a volatile field and returns at once when nobody
+ * watches.
+ */
+public class WatchRegistry {
+
+	/** DEFAULT_CAPACITY - pending events kept per subscription */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** DEFAULT_MAX_BATCH_SIZE - events delivered per listener call */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	private static final WatchSubscription[] NO_SUBSCRIPTIONS = new WatchSubscription[0];
+
+	private volatile WatchSubscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+	/**
+	 * subscribe watches a path with default buffer sizes
+	 *
+	 * @param path
+	 *            absolute path to watch
+	 * @param recursive
+	 *            set to true to receive events of all descendants instead of
+	 *            children only
+	 * @param listener
+	 *            listener receiving the events
+	 * @return subscription to unsubscribe with
+	 */
+	public WatchSubscription subscribe(String path, boolean recursive, WatchListener listener) {
+		return subscribe(path, recursive, listener, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * subscribe watches a path
+	 *
+	 * @param path
+	 *            absolute path to watch
+	 * @param recursive
+	 *            set to true to receive events of all descendants instead of
+	 *            children only
+	 * @param listener
+	 *            listener receiving the events
+	 * @param capacity
+	 *            pending events kept before they collapse into an OVERFLOW event
+	 * @param maxBatchSize
+	 *            events delivered per listener call
+	 * @return subscription to unsubscribe with
+	 */
+	public synchronized WatchSubscription subscribe(String path, boolean recursive, WatchListener listener,
+			int capacity, int maxBatchSize) {
+		WatchSubscription subscription = new WatchSubscription(path, recursive, listener, capacity, maxBatchSize);
+		WatchSubscription[] updated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+		updated[subscriptions.length] = subscription;
+		subscription.start();
+		subscriptions = updated;
+		return subscription;
+	}
+
+	/**
+	 * unsubscribe stops a subscription
+	 *
+	 * @param subscription
+	 *            subscription to stop
+	 * @return true if it was subscribed
+	 */
+	public synchronized boolean unsubscribe(WatchSubscription subscription) {
+		List<WatchSubscription> remaining = new ArrayList<>(Arrays.asList(subscriptions));
+		boolean isRemoved = remaining.remove(subscription);
+		subscription.close();
+		subscriptions = remaining.isEmpty() ? NO_SUBSCRIPTIONS : remaining.toArray(NO_SUBSCRIPTIONS);
+		return isRemoved;
+	}
+
+	/**
+	 * @return active subscriptions
+	 */
+	public List<WatchSubscription> getSubscriptions() {
+		return Arrays.asList(subscriptions.clone());
+	}
+
+	/**
+	 * isWatched checks whether anybody watches, so that publishers can skip
+	 * building events
+	 *
+	 * @return true if there is at least one subscription
+	 */
+	public boolean isWatched() {
+		return subscriptions.length > 0;
+	}
+
+	/**
+	 * publish routes an event to the matching subscriptions
+	 *
+	 * @param type
+	 *            event type
+	 * @param path
+	 *            absolute path of the directory created or removed
+	 */
+	public void publish(WatchEvent.Type type, String path) {
+		WatchSubscription[] current = subscriptions;
+		if (current.length == 0) {
+			return;
+		}
+		WatchEvent event = null;
+		for (WatchSubscription subscription : current) {
+			if (subscription.matches(type, path)) {
+				if (event == null) {
+					event = new WatchEvent(type, path);
+				}
+				subscription.offer(event);
+			}
+		}
+	}
+
+	/**
+	 * publishOverflow tells every subscription that the tree was replaced, so
+	 * that watchers list their path again
+	 */
+	public void publishOverflow() {
+		for (WatchSubscription subscription : subscriptions) {
+			subscription.overflow();
+		}
+	}
+}
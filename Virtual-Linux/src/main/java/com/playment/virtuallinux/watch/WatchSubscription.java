@@ -0,0 +1,229 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * WatchSubscription is a watch on a path. Matching events are queued in a
+ * bounded ring buffer and delivered to the listener in batches by a dedicated
+ * delivery thread, so publishers never wait for listeners.
+ *
+ * Events are coalesced while they wait in the buffer. A DELETED event absorbs
+ * the pending events below its path, and when the buffer is full all pending
+ * events collapse into one OVERFLOW event on the watched path.
+ */
+public class WatchSubscription {
+
+	/** LINGER_MILLIS - time a batch waits for more events once it has one */
+	private static final long LINGER_MILLIS = 10;
+
+	private final String path;
+
+	private final boolean recursive;
+
+	private final WatchListener listener;
+
+	private final WatchEvent[] ring;
+
+	private final int maxBatchSize;
+
+	/** head - index of the oldest pending event */
+	private int head = 0;
+
+	/** size - number of pending events */
+	private int size = 0;
+
+	private volatile boolean closed = false;
+
+	WatchSubscription(String path, boolean recursive, WatchListener listener, int capacity, int maxBatchSize) {
+		if (capacity < 1 || maxBatchSize < 1) {
+			throw new IllegalArgumentException("capacity and maxBatchSize must be positive");
+		}
+		this.path = path;
+		this.recursive = recursive;
+		this.listener = listener;
+		this.ring = new WatchEvent[capacity];
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * start starts the delivery thread
+	 */
+	void start() {
+		Thread dispatcher = new Thread(this::deliver, "watch-" + path);
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * close stops delivery, pending events are discarded
+	 */
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * matches checks whether an event on given path concerns this subscription.
+	 * Children of the watched path match, all descendants if recursive, and so
+	 * does the removal of the watched path or one of its ancestors.
+	 *
+	 * @param type
+	 *            event type
+	 * @param eventPath
+	 *            absolute path of the event
+	 * @return true if the event has to be delivered
+	 */
+	boolean matches(WatchEvent.Type type, String eventPath) {
+		if (type == WatchEvent.Type.DELETED && DirectoryPaths.isAncestorOrEqual(eventPath, path)) {
+			return true;
+		}
+		if (eventPath.equals(path) || !DirectoryPaths.isAncestorOrEqual(path, eventPath)) {
+			return false;
+		}
+		return recursive || eventPath.lastIndexOf('/') == (DirectoryPaths.ROOT.equals(path) ? 0 : path.length());
+	}
+
+	/**
+	 * offer queues an event, coalescing it with pending events when possible
+	 *
+	 * @param event
+	 *            event to queue
+	 */
+	synchronized void offer(WatchEvent event) {
+		if (closed) {
+			return;
+		}
+		WatchEvent last = size > 0 ? ring[(head + size - 1) % ring.length] : null;
+		if (last != null && last.getType() == WatchEvent.Type.OVERFLOW) {
+			ring[(head + size - 1) % ring.length] = new WatchEvent(WatchEvent.Type.OVERFLOW, path,
+					last.getCoalesced() + event.getCoalesced());
+			return;
+		}
+
+		if (event.getType() == WatchEvent.Type.DELETED) {
+			event = absorbBelow(event);
+		}
+		if (size == ring.length) {
+			long coalesced = event.getCoalesced();
+			for (int i = 0; i < size; i++) {
+				coalesced += ring[(head + i) % ring.length].getCoalesced();
+				ring[(head + i) % ring.length] = null;
+			}
+			head = 0;
+			size = 0;
+			event = new WatchEvent(WatchEvent.Type.OVERFLOW, path, coalesced);
+		}
+		ring[(head + size) % ring.length] = event;
+		size++;
+		notifyAll();
+	}
+
+	/**
+	 * overflow replaces pending events by a single OVERFLOW event, used when the
+	 * whole tree is replaced at once
+	 */
+	synchronized void overflow() {
+		if (closed) {
+			return;
+		}
+		long coalesced = 1;
+		for (int i = 0; i < size; i++) {
+			coalesced += ring[(head + i) % ring.length].getCoalesced();
+			ring[(head + i) % ring.length] = null;
+		}
+		head = 0;
+		size = 1;
+		ring[0] = new WatchEvent(WatchEvent.Type.OVERFLOW, path, coalesced);
+		notifyAll();
+	}
+
+	/**
+	 * absorbBelow drops pending events below the path of a DELETED event, they
+	 * are superseded by the removal of the subtree
+	 *
+	 * @param deleted
+	 *            DELETED event being queued
+	 * @return DELETED event counting the absorbed events
+	 */
+	private WatchEvent absorbBelow(WatchEvent deleted) {
+		long coalesced = deleted.getCoalesced();
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			WatchEvent pending = ring[(head + i) % ring.length];
+			if (!pending.getPath().equals(deleted.getPath())
+					&& DirectoryPaths.isAncestorOrEqual(deleted.getPath(), pending.getPath())) {
+				coalesced += pending.getCoalesced();
+			} else {
+				ring[(head + kept) % ring.length] = pending;
+				kept++;
+			}
+		}
+		for (int i = kept; i < size; i++) {
+			ring[(head + i) % ring.length] = null;
+		}
+		size = kept;
+		return coalesced == deleted.getCoalesced() ? deleted
+				: new WatchEvent(WatchEvent.Type.DELETED, deleted.getPath(), coalesced);
+	}
+
+	/**
+	 * take waits for pending events and removes a batch of them
+	 *
+	 * @return batch of events, or null once closed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private synchronized List<WatchEvent> take() throws InterruptedException {
+		while (size == 0 && !closed) {
+			wait();
+		}
+		long deadline = System.currentTimeMillis() + LINGER_MILLIS;
+		for (long remaining = LINGER_MILLIS; size < maxBatchSize && remaining > 0 && !closed; remaining = deadline
+				- System.currentTimeMillis()) {
+			wait(remaining);
+		}
+		if (closed) {
+			return null;
+		}
+		int count = Math.min(size, maxBatchSize);
+		List<WatchEvent> batch = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			batch.add(ring[head]);
+			ring[head] = null;
+			head = (head + 1) % ring.length;
+		}
+		size -= count;
+		return batch;
+	}
+
+	/**
+	 * deliver hands batches to the listener until the subscription is closed
+	 */
+	private void deliver() {
+		try {
+			for (List<WatchEvent> batch = take(); batch != null; batch = take()) {
+				listener.onEvents(batch);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.playment.virtuallinux.replication.ReplicationEntry;
+import com.playment.virtuallinux.watch.WatchEvent;
+import com.playment.virtuallinux.watch.WatchSubscription;
+
+import junit.framework.TestCase;
+
+/**
+ * CommandImplementerTest checks how a follower session reports replicated
+ * changes to its watchers
+ *
+ */
+public class CommandImplementerTest extends TestCase {
+
+	private final List<WatchEvent> events = new ArrayList<>();
+
+	public void testLoadCheckpointTellsEveryWatcherToListAgain() throws InterruptedException {
+		CommandImplementer session = new CommandImplementer();
+		WatchSubscription rootWatch = session.getWatchRegistry().subscribe("/", true, this::deliver);
+		WatchSubscription tenantWatch = session.getWatchRegistry().subscribe("/tenant", false, this::deliver);
+		session.applyReplicated(new ReplicationEntry(1, 0, ReplicationEntry.Operation.MKDIR, "/tenant"));
+
+		session.loadCheckpoint(Arrays.asList("/tenant", "/tenant/hiring", "/other"));
+
+		awaitEvents(2);
+		session.getWatchRegistry().unsubscribe(rootWatch);
+		session.getWatchRegistry().unsubscribe(tenantWatch);
+		List<String> delivered = new ArrayList<>();
+		for (WatchEvent event : getEvents()) {
+			if (event.getType() == WatchEvent.Type.OVERFLOW) {
+				delivered.add(event.getPath());
+			}
+		}
+		assertTrue(delivered.toString(), delivered.contains("/"));
+		assertTrue(delivered.toString(), delivered.contains("/tenant"));
+	}
+
+	private synchronized void deliver(List<WatchEvent> batch) {
+		events.addAll(batch);
+		notifyAll();
+	}
+
+	private synchronized List<WatchEvent> getEvents() {
+		return new ArrayList<>(events);
+	}
+
+	private synchronized void awaitEvents(int overflows) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (events.stream().filter(event -> event.getType() == WatchEvent.Type.OVERFLOW).count() < overflows) {
+			assertTrue("events " + events, System.currentTimeMillis() < deadline);
+			wait(100);
+		}
+	}
+}
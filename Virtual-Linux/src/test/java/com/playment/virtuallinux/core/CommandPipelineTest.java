@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.playment.virtuallinux.watch.WatchSubscription;
+
+import junit.framework.TestCase;
+
+/**
+ * CommandPipelineTest checks the outputs printed by commands run through a
+ * {@link CommandPipeline}
+ *
+ */
+public class CommandPipelineTest extends TestCase {
+
+	public void testOutputsKeepInputOrder() throws InterruptedException {
+		CommandImplementer session = new CommandImplementer();
+		TestSessions.RecordingOutputSink sink = new TestSessions.RecordingOutputSink();
+		session.setOutputSink(sink);
+
+		run(session, "mkdir a b\ncd a\npwd\nls\nexit\nmkdir c\n");
+
+		List<String> expected = new ArrayList<>();
+		expected.add("SUCC: CREATED SUCCESSFULLY - FULL PATH: //a");
+		expected.add("SUCC: CREATED SUCCESSFULLY - FULL PATH: //b");
+		expected.add("SUCC: REACHED: //a");
+		expected.add("PATH: //a");
+		expected.add("DIRS: NO DIRECTORY EXIST");
+		assertEquals(expected, sink.getMessages());
+		assertSame(sink, session.getOutputSink());
+	}
+
+	public void testWatchEventsArePrintedAfterTheWatchCommand() throws InterruptedException {
+		CommandImplementer session = new CommandImplementer();
+		TestSessions.RecordingOutputSink sink = new TestSessions.RecordingOutputSink();
+		session.setOutputSink(sink);
+
+		run(session, "watch -r /\nmkdir /k1\nmkdir /k2\n");
+		awaitMessage(sink, "EVENT: CREATED /k2");
+		run(session, "mkdir /k3\n");
+		awaitMessage(sink, "EVENT: CREATED /k3");
+
+		assertTrue(sink.getMessages().contains("EVENT: CREATED /k1"));
+		for (WatchSubscription subscription : session.getWatchRegistry().getSubscriptions()) {
+			session.getWatchRegistry().unsubscribe(subscription);
+		}
+	}
+
+	public void testWaitingForInputIsNotReaderBusyTime() throws InterruptedException {
+		CommandImplementer session = new CommandImplementer();
+		session.setOutputSink(new TestSessions.RecordingOutputSink());
+		CommandPipeline pipeline = new CommandPipeline(session, 2);
+
+		pipeline.run(new SlowInputStream("mkdir a\n", 10, 20));
+
+		assertEquals(10, pipeline.getCommandCount());
+		assertTrue(pipeline.getInputWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+		assertTrue(pipeline.getReaderBusyNanos() < TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	/**
+	 * SlowInputStream delivers a line at a time, like a pipe with a slow producer
+	 */
+	private static class SlowInputStream extends InputStream {
+
+		private final byte[] line;
+
+		private final long delayMillis;
+
+		private int remainingLines;
+
+		SlowInputStream(String line, int lines, long delayMillis) {
+			this.line = line.getBytes(StandardCharsets.UTF_8);
+			this.remainingLines = lines;
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public int read() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remainingLines == 0) {
+				return -1;
+			}
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			remainingLines--;
+			System.arraycopy(line, 0, buffer, offset, line.length);
+			return line.length;
+		}
+	}
+
+	private void run(CommandImplementer session, String input) throws InterruptedException {
+		new CommandPipeline(session, 2).run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private void awaitMessage(TestSessions.RecordingOutputSink sink, String message) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!sink.getMessages().contains(message)) {
+			assertTrue("missing " + message + " in " + sink.getMessages(), System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.playment.virtuallinux.replication.ReplicationEntry;
+import com.playment.virtuallinux.replication.ReplicationNode;
+
+import junit.framework.TestCase;
+
+/**
+ * ParallelScriptExecutorTest checks that running a script in parallel prints
+ * the same output and builds the same tree as running it line by line.
+ *
+ */
+public class ParallelScriptExecutorTest extends TestCase {
+
+	private static final String[] NAMES = { "a", "b", "c", "x" };
+
+	public void testRandomScriptsMatchSerialExecution() {
+		for (int seed = 0; seed < 300; seed++) {
+			List<String> script = randomScript(new Random(seed), 200);
+			assertEquivalent("seed " + seed, script, 4, 1 + seed % 32);
+		}
+	}
+
+	public void testPwdArgumentsAreNotPlannedAsDirectories() {
+		List<String> script = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			script.add("mkdir /d" + i);
+		}
+		script.add("cd /");
+		script.add("pwd x");
+		script.add("ls");
+		script.add("mkdir x/y");
+		script.add("ls y");
+		script.add("mkdir");
+		script.add("rm");
+		script.add("ls");
+		for (int run = 0; run < 5; run++) {
+			assertEquivalent("run " + run, script, 4, ParallelScriptExecutor.DEFAULT_WINDOW_SIZE);
+		}
+	}
+
+	public void testTenantsCdIntoTheirOwnDirectories() {
+		List<String> script = new ArrayList<>();
+		for (int tenant = 0; tenant < 50; tenant++) {
+			script.add("mkdir /tenant" + tenant);
+			script.add("cd /tenant" + tenant);
+			script.add("mkdir hiring sales hiring/2024");
+			script.add("cd hiring");
+			script.add("ls");
+			script.add("cd /tenant" + (tenant + 1));
+			script.add("rm /tenant" + tenant + "/sales");
+			script.add("cd /tenant" + tenant + "/sales");
+			script.add("pwd");
+			script.add("cd /");
+		}
+		for (int run = 0; run < 5; run++) {
+			assertEquivalent("run " + run, script, 4, ParallelScriptExecutor.DEFAULT_WINDOW_SIZE);
+		}
+	}
+
+	public void testReadOnlySessionDoesNotPlanRejectedDirectories() {
+		List<String> script = new ArrayList<>();
+		script.add("mkdir /a");
+		script.add("cd /a");
+		script.add("ls");
+		script.add("rm /a");
+		script.add("pwd");
+		assertEquivalent("read only", script, 4, ParallelScriptExecutor.DEFAULT_WINDOW_SIZE, new ReplicationNode() {
+
+			@Override
+			public boolean isReadOnly() {
+				return true;
+			}
+
+			@Override
+			public void record(ReplicationEntry.Operation operation, String path) {
+			}
+
+			@Override
+			public String getStatus() {
+				return "FOLLOWER";
+			}
+		});
+	}
+
+	private void assertEquivalent(String message, List<String> script, int threads, int windowSize) {
+		assertEquivalent(message, script, threads, windowSize, null);
+	}
+
+	private void assertEquivalent(String message, List<String> script, int threads, int windowSize,
+			ReplicationNode replicationNode) {
+		CommandImplementer serial = new CommandImplementer();
+		serial.setReplicationNode(replicationNode);
+		TestSessions.RecordingOutputSink serialOutput = new TestSessions.RecordingOutputSink();
+		serial.setOutputSink(serialOutput);
+		for (String line : script) {
+			String command = line.trim();
+			if (command.isEmpty()) {
+				continue;
+			}
+			if (command.equals("exit")) {
+				break;
+			}
+			serial.setCommand(command);
+			serial.implementCommand();
+		}
+
+		CommandImplementer parallel = new CommandImplementer();
+		parallel.setReplicationNode(replicationNode);
+		TestSessions.RecordingOutputSink parallelOutput = new TestSessions.RecordingOutputSink();
+		parallel.setOutputSink(parallelOutput);
+		new ParallelScriptExecutor(parallel, threads, windowSize).execute(script);
+
+		assertEquals(message, serialOutput.getLevelledMessages(), parallelOutput.getLevelledMessages());
+		assertEquals(message, TestSessions.collectPaths(serial), TestSessions.collectPaths(parallel));
+		assertEquals(message, serial.executePwd(serial.getCurrentDirectory()),
+				parallel.executePwd(parallel.getCurrentDirectory()));
+	}
+
+	private List<String> randomScript(Random random, int length) {
+		List<String> script = new ArrayList<>();
+		for (int i = 0; i < length; i++) {
+			int kind = random.nextInt(100);
+			if (kind < 35) {
+				script.add("mkdir " + randomArguments(random));
+			} else if (kind < 55) {
+				script.add("rm " + randomArguments(random));
+			} else if (kind < 70) {
+				script.add(random.nextBoolean() ? "ls" : "ls " + randomPath(random));
+			} else if (kind < 80) {
+				script.add(random.nextBoolean() ? "pwd" : "pwd " + randomPath(random));
+			} else if (kind < 92) {
+				script.add(random.nextInt(4) == 0 ? "cd /" : "cd " + randomPath(random));
+			} else if (kind < 94) {
+				script.add("session clear");
+			} else if (kind < 96) {
+				script.add(random.nextBoolean() ? "mkdir" : "rm");
+			} else if (kind < 98) {
+				script.add("");
+			} else {
+				script.add("unknown " + randomPath(random));
+			}
+		}
+		return script;
+	}
+
+	private String randomArguments(Random random) {
+		StringBuilder arguments = new StringBuilder(randomPath(random));
+		for (int count = random.nextInt(3); count > 0; count--) {
+			arguments.append(' ').append(randomPath(random));
+		}
+		return arguments.toString();
+	}
+
+	private String randomPath(Random random) {
+		StringBuilder path = new StringBuilder(random.nextInt(3) == 0 ? "/" : "");
+		for (int depth = 1 + random.nextInt(3); depth > 0; depth--) {
+			path.append(NAMES[random.nextInt(NAMES.length)]);
+			if (depth > 1) {
+				path.append('/');
+			}
+		}
+		return path.toString();
+	}
+}
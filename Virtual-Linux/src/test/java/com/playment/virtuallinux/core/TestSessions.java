@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.playment.virtuallinux.replication.ReplicationApplier;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+/**
+ * TestSessions holds what the tests need to observe a session: a sink that
+ * records its output and a listing of its tree
+ *
+ */
+public final class TestSessions {
+
+	private TestSessions() {
+	}
+
+	/**
+	 * RecordingOutputSink keeps every message with its level, written from any
+	 * thread, in order
+	 */
+	public static class RecordingOutputSink implements OutputSink {
+
+		private final List<String> messages = new ArrayList<>();
+
+		private final List<String> levels = new ArrayList<>();
+
+		@Override
+		public synchronized void info(String message) {
+			messages.add(message);
+			levels.add("INFO");
+		}
+
+		@Override
+		public synchronized void error(String message) {
+			messages.add(message);
+			levels.add("ERROR");
+		}
+
+		public synchronized List<String> getMessages() {
+			return new ArrayList<>(messages);
+		}
+
+		/**
+		 * getLevelledMessages lists the messages prefixed by their level
+		 *
+		 * @return messages such as 'ERROR ERR: INVALID PATH'
+		 */
+		public synchronized List<String> getLevelledMessages() {
+			List<String> levelledMessages = new ArrayList<>(messages.size());
+			for (int i = 0; i < messages.size(); i++) {
+				levelledMessages.add(levels.get(i) + " " + messages.get(i));
+			}
+			return levelledMessages;
+		}
+	}
+
+	/**
+	 * collectPaths lists the whole tree of a session, whatever its current
+	 * directory is
+	 *
+	 * @param session
+	 *            session to list
+	 * @return absolute paths, parents before children
+	 */
+	public static List<String> collectPaths(CommandImplementer session) {
+		synchronized (session) {
+			return ReplicationApplier.collectPaths(DirectoryPaths.getRoot(session.getCurrentDirectory()));
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.core;
+
+import java.util.List;
+
+import com.playment.virtuallinux.replication.ReplicationEntry;
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+import junit.framework.TestCase;
+
+/**
+ * TreeDiffTest checks the differences reported between two trees
+ *
+ */
+public class TreeDiffTest extends TestCase {
+
+	public void testOnlyTopMostMissingDirectoriesAreReported() {
+		CommandImplementer session = new CommandImplementer();
+		session.setOutputSink(new TestSessions.RecordingOutputSink());
+		execute(session, "mkdir /first/hiring/2024/q1 /first/hiring/2024/q2 /first/sales /first/shared/x");
+		execute(session, "mkdir /second/sales /second/ops/oncall /second/shared/x");
+		Directory<String> root = DirectoryPaths.getRoot(session.getCurrentDirectory());
+
+		List<TreeDiff.Difference> differences = TreeDiff.diff(DirectoryPaths.findDirectory(root, "/first"),
+				DirectoryPaths.findDirectory(root, "/second"));
+
+		assertEquals(2, differences.size());
+		assertEquals(TreeDiff.Side.FIRST, differences.get(0).getSide());
+		assertEquals("/hiring", differences.get(0).getPath());
+		assertEquals(TreeDiff.Side.SECOND, differences.get(1).getSide());
+		assertEquals("/ops", differences.get(1).getPath());
+	}
+
+	public void testTreeLoadedFromCheckpointIsIdenticalToLeader() {
+		CommandImplementer leader = new CommandImplementer();
+		leader.setOutputSink(new TestSessions.RecordingOutputSink());
+		execute(leader, "mkdir /tenant1/hiring /tenant2 /tenant1/sales/2024");
+		execute(leader, "rm /tenant1/hiring");
+		execute(leader, "mkdir /tenant3/ops /tenant1/hiring/2025");
+		CommandImplementer follower = new CommandImplementer();
+		follower.applyReplicated(new ReplicationEntry(1, 0, ReplicationEntry.Operation.MKDIR, "/stale/old"));
+
+		follower.loadCheckpoint(TestSessions.collectPaths(leader));
+
+		Directory<String> leaderRoot = DirectoryPaths.getRoot(leader.getCurrentDirectory());
+		Directory<String> followerRoot = DirectoryPaths.getRoot(follower.getCurrentDirectory());
+		assertTrue(TreeDiff.diff(leaderRoot, followerRoot).isEmpty());
+		assertEquals(leaderRoot.getContentHash(), followerRoot.getContentHash());
+	}
+
+	private void execute(CommandImplementer session, String command) {
+		session.setCommand(command);
+		session.implementCommand();
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.playment.virtuallinux.type.Directory;
+import com.playment.virtuallinux.type.DirectoryPaths;
+
+import junit.framework.TestCase;
+
+/**
+ * ReplicationLogTest checks compaction of the log into its checkpoint
+ *
+ */
+public class ReplicationLogTest extends TestCase {
+
+	public void testCheckpointHoldsCompactedEntries() {
+		ReplicationLog replicationLog = new ReplicationLog(4);
+		List<ReplicationEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			entries.add(replicationLog.append(ReplicationEntry.Operation.MKDIR, "/dir" + i % 3 + "/sub" + i));
+		}
+		entries.add(replicationLog.append(ReplicationEntry.Operation.RM, "/dir1"));
+		entries.add(replicationLog.append(ReplicationEntry.Operation.MKDIR, "/last"));
+
+		ReplicationLog.Checkpoint checkpoint = replicationLog.getCheckpoint();
+		assertEquals(replicationLog.getCheckpointSequence(), checkpoint.getSequence());
+		assertTrue(checkpoint.getSequence() > 0);
+		Directory<String> expected = new Directory<>(DirectoryPaths.ROOT);
+		for (ReplicationEntry entry : entries.subList(0, (int) checkpoint.getSequence())) {
+			expected = ReplicationApplier.apply(expected, entry);
+		}
+		assertEquals(ReplicationApplier.collectPaths(expected), checkpoint.getPaths());
+	}
+
+	public void testCheckpointIsListedOncePerCompaction() {
+		ReplicationLog replicationLog = new ReplicationLog(2);
+		for (int i = 0; i < 3; i++) {
+			replicationLog.append(ReplicationEntry.Operation.MKDIR, "/dir" + i);
+		}
+		ReplicationLog.Checkpoint checkpoint = replicationLog.getCheckpoint();
+		assertSame(checkpoint, replicationLog.getCheckpoint());
+
+		replicationLog.append(ReplicationEntry.Operation.MKDIR, "/dir3");
+		replicationLog.append(ReplicationEntry.Operation.MKDIR, "/dir4");
+		assertNotSame(checkpoint, replicationLog.getCheckpoint());
+		assertEquals(replicationLog.getCheckpointSequence(), replicationLog.getCheckpoint().getSequence());
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.replication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.playment.virtuallinux.core.CommandImplementer;
+import com.playment.virtuallinux.core.TestSessions;
+
+import junit.framework.TestCase;
+
+/**
+ * ReplicationTest runs a leader and followers in one process, connected over
+ * local sockets like separate processes would be
+ *
+ */
+public class ReplicationTest extends TestCase {
+
+	private static final long TIMEOUT_MILLIS = 10_000;
+
+	private final List<ReplicationLeader> leaders = new ArrayList<>();
+
+	private final List<ReplicationFollower> followers = new ArrayList<>();
+
+	@Override
+	protected void tearDown() {
+		followers.forEach(ReplicationFollower::stop);
+		leaders.forEach(ReplicationLeader::stop);
+	}
+
+	public void testFollowersCatchUpFromCheckpointAndTail() throws Exception {
+		ReplicationLog replicationLog = new ReplicationLog(4);
+		CommandImplementer leaderSession = startLeader(replicationLog, 0);
+		for (int i = 0; i < 20; i++) {
+			execute(leaderSession, "mkdir /tenant" + i % 5 + "/dir" + i);
+		}
+		execute(leaderSession, "rm /tenant3");
+
+		int port = leaders.get(0).getPort();
+		CommandImplementer firstFollower = startFollower(port);
+		CommandImplementer secondFollower = startFollower(port);
+		awaitSameTree(leaderSession, firstFollower);
+		awaitSameTree(leaderSession, secondFollower);
+		assertTrue(replicationLog.getCheckpointSequence() > 0);
+
+		execute(leaderSession, "mkdir /tenant0/late");
+		execute(leaderSession, "session clear");
+		execute(leaderSession, "mkdir /after/clear");
+		awaitSameTree(leaderSession, firstFollower);
+		awaitSameTree(leaderSession, secondFollower);
+		assertEquals(replicationLog.getLastSequence(), followers.get(0).getAppliedSequence());
+		assertEquals(replicationLog.getLastSequence(), followers.get(1).getAppliedSequence());
+	}
+
+	public void testFollowerRejectsMutations() throws Exception {
+		CommandImplementer leaderSession = startLeader(new ReplicationLog(), 0);
+		execute(leaderSession, "mkdir /a");
+		CommandImplementer followerSession = startFollower(leaders.get(0).getPort());
+		awaitSameTree(leaderSession, followerSession);
+
+		TestSessions.RecordingOutputSink output = new TestSessions.RecordingOutputSink();
+		followerSession.setOutputSink(output);
+		execute(followerSession, "mkdir /b");
+		execute(followerSession, "rm /a");
+		execute(followerSession, "cd /a");
+
+		assertEquals(3, output.getMessages().size());
+		assertTrue(output.getMessages().get(0).startsWith("ERR: READ ONLY"));
+		assertTrue(output.getMessages().get(1).startsWith("ERR: READ ONLY"));
+		assertEquals("SUCC: REACHED: //a", output.getMessages().get(2));
+		assertEquals(TestSessions.collectPaths(leaderSession), TestSessions.collectPaths(followerSession));
+	}
+
+	public void testFollowerOfRestartedLeaderLoadsCheckpoint() throws Exception {
+		CommandImplementer firstRun = startLeader(new ReplicationLog(), 0);
+		int port = leaders.get(0).getPort();
+		execute(firstRun, "mkdir /old1 /old2 /old3");
+		CommandImplementer followerSession = startFollower(port);
+		awaitSameTree(firstRun, followerSession);
+		leaders.get(0).stop();
+
+		// the new run has more entries than the follower applied from the first one
+		ReplicationLeader secondLeader = new ReplicationLeader(new ReplicationLog(), port);
+		leaders.add(secondLeader);
+		CommandImplementer secondRun = new CommandImplementer();
+		secondRun.setOutputSink(new TestSessions.RecordingOutputSink());
+		secondRun.setReplicationNode(secondLeader);
+		execute(secondRun, "mkdir /new1 /new2 /new3 /new4 /new5");
+		secondLeader.start();
+
+		awaitSameTree(secondRun, followerSession);
+		assertEquals(5, followers.get(0).getAppliedSequence());
+	}
+
+	private CommandImplementer startLeader(ReplicationLog replicationLog, int port) throws IOException {
+		ReplicationLeader leader = new ReplicationLeader(replicationLog, port);
+		leaders.add(leader);
+		leader.start();
+		CommandImplementer session = new CommandImplementer();
+		session.setOutputSink(new TestSessions.RecordingOutputSink());
+		session.setReplicationNode(leader);
+		return session;
+	}
+
+	private CommandImplementer startFollower(int port) {
+		CommandImplementer session = new CommandImplementer();
+		session.setOutputSink(new TestSessions.RecordingOutputSink());
+		ReplicationFollower follower = new ReplicationFollower(session, port);
+		followers.add(follower);
+		session.setReplicationNode(follower);
+		follower.start();
+		return session;
+	}
+
+	private void execute(CommandImplementer session, String command) {
+		session.setCommand(command);
+		session.implementCommand();
+	}
+
+	private void awaitSameTree(CommandImplementer leaderSession, CommandImplementer followerSession)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		List<String> expected = TestSessions.collectPaths(leaderSession);
+		while (!expected.equals(TestSessions.collectPaths(followerSession))) {
+			assertTrue("follower has " + TestSessions.collectPaths(followerSession) + " instead of " + expected,
+					System.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+		}
+	}
+}
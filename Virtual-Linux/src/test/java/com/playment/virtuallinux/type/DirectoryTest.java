@@ -0,0 +1,71 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.type;
+
+import junit.framework.TestCase;
+
+/**
+ * DirectoryTest checks that content hashes follow the structure of a tree,
+ * whatever order it was built in and whichever hashes were cached before a
+ * change
+ *
+ */
+public class DirectoryTest extends TestCase {
+
+	public void testTreesBuiltInDifferentOrdersHashTheSame() {
+		Directory<String> first = new Directory<>(DirectoryPaths.ROOT);
+		Directory<String> hiring = first.createDirectory(new Directory<>("hiring"));
+		hiring.createDirectory(new Directory<>("2023"));
+		hiring.createDirectory(new Directory<>("2024"));
+		first.createDirectory(new Directory<>("sales"));
+
+		Directory<String> second = new Directory<>(DirectoryPaths.ROOT);
+		second.createDirectory(new Directory<>("sales"));
+		Directory<String> otherHiring = second.createDirectory(new Directory<>("hiring"));
+		otherHiring.createDirectory(new Directory<>("2024"));
+		otherHiring.createDirectory(new Directory<>("2023"));
+
+		assertEquals(first.getContentHash(), second.getContentHash());
+		otherHiring.createDirectory(new Directory<>("2025"));
+		assertFalse(first.getContentHash() == second.getContentHash());
+	}
+
+	public void testDeepChangesReachRootAfterInnerHashWasCached() {
+		Directory<String> root = build("/a/b/c");
+		Directory<String> b = DirectoryPaths.findDirectory(root, "/a/b");
+		Directory<String> c = DirectoryPaths.findDirectory(root, "/a/b/c");
+		root.getContentHash();
+
+		Directory<String> d = c.createDirectory(new Directory<>("d"));
+		// caches b again while a and root stay stale
+		b.getContentHash();
+		Directory<String> e = d.createDirectory(new Directory<>("e"));
+		assertEquals(build("/a/b/c/d/e").getContentHash(), root.getContentHash());
+
+		root.createDirectory(new Directory<>("x"));
+		// caches a again while root stays stale
+		DirectoryPaths.findDirectory(root, "/a").getContentHash();
+		d.removeDirectory(e);
+		assertEquals(build("/a/b/c/d", "/x").getContentHash(), root.getContentHash());
+	}
+
+	/**
+	 * build creates a tree with given directories
+	 *
+	 * @param paths
+	 *            absolute paths of the deepest directories
+	 * @return root of the tree
+	 */
+	private Directory<String> build(String... paths) {
+		Directory<String> root = new Directory<>(DirectoryPaths.ROOT);
+		for (String path : paths) {
+			Directory<String> parent = root;
+			for (String dirName : DirectoryPaths.toComponents(path)) {
+				Directory<String> child = parent.getChild(dirName);
+				parent = child == null ? parent.createDirectory(new Directory<>(dirName)) : child;
+			}
+		}
+		return root;
+	}
+}
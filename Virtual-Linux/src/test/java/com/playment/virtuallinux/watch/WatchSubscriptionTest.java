@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package com.playment.virtuallinux.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * WatchSubscriptionTest checks which events a subscription receives and how
+ * pending events are coalesced. Events are queued before delivery starts, so
+ * the coalescing does not depend on the speed of the delivery thread.
+ *
+ */
+public class WatchSubscriptionTest extends TestCase {
+
+	private final List<WatchEvent> events = new ArrayList<>();
+
+	private final List<WatchSubscription> subscriptions = new ArrayList<>();
+
+	@Override
+	protected void tearDown() {
+		subscriptions.forEach(WatchSubscription::close);
+	}
+
+	public void testDeletedEventAbsorbsPendingDescendants() throws InterruptedException {
+		WatchSubscription subscription = subscribe("/", true, WatchRegistry.DEFAULT_CAPACITY);
+		publish(subscription, WatchEvent.Type.CREATED, "/a");
+		publish(subscription, WatchEvent.Type.CREATED, "/a/b");
+		publish(subscription, WatchEvent.Type.CREATED, "/ab");
+		publish(subscription, WatchEvent.Type.CREATED, "/a/b/c");
+		publish(subscription, WatchEvent.Type.DELETED, "/a");
+
+		subscription.start();
+
+		List<WatchEvent> delivered = awaitEvents(3);
+		assertEquals("[CREATED /a, CREATED /ab, DELETED /a (3 EVENTS)]", delivered.toString());
+		assertEquals(3, delivered.get(2).getCoalesced());
+	}
+
+	public void testFullBufferCollapsesIntoOneOverflow() throws InterruptedException {
+		WatchSubscription subscription = subscribe("/tenant", true, 4);
+		for (int i = 0; i < 10; i++) {
+			publish(subscription, WatchEvent.Type.CREATED, "/tenant/dir" + i);
+		}
+
+		subscription.start();
+
+		List<WatchEvent> delivered = awaitEvents(1);
+		assertEquals(1, delivered.size());
+		assertEquals(WatchEvent.Type.OVERFLOW, delivered.get(0).getType());
+		assertEquals("/tenant", delivered.get(0).getPath());
+		assertEquals(10, delivered.get(0).getCoalesced());
+	}
+
+	public void testNonRecursiveWatchGetsChildrenAndAncestorRemoval() throws InterruptedException {
+		WatchSubscription subscription = subscribe("/tenant/hiring", false, WatchRegistry.DEFAULT_CAPACITY);
+		publish(subscription, WatchEvent.Type.CREATED, "/tenant/hiring/a");
+		publish(subscription, WatchEvent.Type.CREATED, "/tenant/hiring/a/b");
+		publish(subscription, WatchEvent.Type.DELETED, "/tenant/hiring/a/b");
+		publish(subscription, WatchEvent.Type.CREATED, "/tenant/hiringx");
+		publish(subscription, WatchEvent.Type.CREATED, "/tenant/other");
+		subscription.start();
+		awaitEvents(1);
+
+		publish(subscription, WatchEvent.Type.DELETED, "/tenant");
+
+		assertEquals("[CREATED /tenant/hiring/a, DELETED /tenant]", awaitEvents(2).toString());
+	}
+
+	private WatchSubscription subscribe(String path, boolean recursive, int capacity) {
+		WatchSubscription subscription = new WatchSubscription(path, recursive, this::deliver, capacity,
+				WatchRegistry.DEFAULT_MAX_BATCH_SIZE);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * publish routes an event to the subscription the way {@link WatchRegistry}
+	 * does
+	 *
+	 * @param subscription
+	 *            subscription to route to
+	 * @param type
+	 *            event type
+	 * @param path
+	 *            absolute path of the event
+	 */
+	private void publish(WatchSubscription subscription, WatchEvent.Type type, String path) {
+		if (subscription.matches(type, path)) {
+			subscription.offer(new WatchEvent(type, path));
+		}
+	}
+
+	private synchronized void deliver(List<WatchEvent> batch) {
+		events.addAll(batch);
+		notifyAll();
+	}
+
+	private synchronized List<WatchEvent> awaitEvents(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (events.size() < count) {
+			assertTrue("events " + events, System.currentTimeMillis() < deadline);
+			wait(100);
+		}
+		// an extra event would arrive within the linger time of the batch
+		wait(50);
+		return new ArrayList<>(events);
+	}
+}